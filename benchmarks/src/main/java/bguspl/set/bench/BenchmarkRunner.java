@@ -0,0 +1,34 @@
+package bguspl.set.bench;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the benchmarks twice: once for throughput (ops/s) and once for the average time (ns/op), both with the gc
+ * profiler so the allocation rate (gc.alloc.rate.norm, bytes/op) is reported as well.
+ * Any regular JMH command line options (e.g. a benchmark regexp, -f, -wi, -i) are passed on.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        run(cmd, Mode.Throughput, TimeUnit.SECONDS);
+        run(cmd, Mode.AverageTime, TimeUnit.NANOSECONDS);
+    }
+
+    private static void run(CommandLineOptions cmd, Mode mode, TimeUnit timeUnit) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .parent(cmd)
+                .mode(mode)
+                .timeUnit(timeUnit)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
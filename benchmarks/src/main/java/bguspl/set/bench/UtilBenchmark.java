@@ -0,0 +1,126 @@
+package bguspl.set.bench;
+
+import bguspl.set.Config;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmarks of the card logic in UtilImpl over several deck configurations.
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UtilBenchmark {
+
+    /**
+     * The number of different random claims / decks to rotate through (so no single input gets optimized for).
+     */
+    private static final int SAMPLES = 64;
+
+    @Param({"3", "4"})
+    public int featureSize;
+
+    @Param({"4", "6"})
+    public int featureCount;
+
+    /**
+     * The number of cards searched by findSets (12 is a full table, larger values are a partial deck).
+     */
+    @Param({"12", "81"})
+    public int cards;
+
+    private Util util;
+    private int[][] claims;
+    private List<List<Integer>> decks;
+    private int[][] deckArrays;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        util = new UtilImpl(config);
+
+        Random random = new Random(0);
+        List<Integer> all = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        claims = new int[SAMPLES][];
+        decks = new ArrayList<>(SAMPLES);
+        deckArrays = new int[SAMPLES][];
+        for (int i = 0; i < SAMPLES; ++i) {
+            Collections.shuffle(all, random);
+            decks.add(new ArrayList<>(all.subList(0, Math.min(cards, all.size()))));
+            deckArrays[i] = decks.get(i).stream().mapToInt(Integer::intValue).toArray();
+            // every other claim is a legal set, the rest are random cards
+            claims[i] = i % 2 == 0 ? util.findSets(all, 1).get(0) : all.subList(0, featureSize).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private int nextSample() {
+        next = (next + 1) & (SAMPLES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public boolean testSet() {
+        return util.testSet(claims[nextSample()]);
+    }
+
+    @Benchmark
+    public List<int[]> findFirstSet() {
+        return util.findSets(decks.get(nextSample()), 1);
+    }
+
+    @Benchmark
+    public List<int[]> findAllSets() {
+        return util.findSets(decks.get(nextSample()), Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public int findAllSetsParallel(Blackhole blackhole) {
+        return util.findSetsParallel(decks.get(nextSample()), Integer.MAX_VALUE, blackhole::consume);
+    }
+
+    @Benchmark
+    public boolean anySetStream() {
+        return util.streamSets(deckArrays[nextSample()], true).anyMatch(set -> true);
+    }
+
+    @Benchmark
+    public long countSetsStream() {
+        return util.streamSets(deckArrays[nextSample()], true).count();
+    }
+
+    @Benchmark
+    public int[] cardToFeatures() {
+        return util.cardToFeatures(claims[nextSample()][0]);
+    }
+
+    @Benchmark
+    public int[][] cardsToFeatures() {
+        return util.cardsToFeatures(claims[nextSample()]);
+    }
+}
@@ -21,6 +21,26 @@ public class Config {
     public final long randomSpinMin;
     public final long randomSpinMax;
 
+    /**
+     * Whether the user interface events are recorded to a binary event log (see GameEventLog) instead of the text log
+     */
+    public final boolean binaryEventLog;
+
+    /**
+     * The number of events the binary event log buffers before dropping new ones
+     */
+    public final int eventLogCapacity;
+
+    /**
+     * Whether the game engine metrics are exposed via JMX (see Metrics)
+     */
+    public final boolean metricsJmx;
+
+    /**
+     * The number of milliseconds between dumps of the metrics to the log (0 to dump them only at the end)
+     */
+    public final long metricsDumpMillis;
+
     /**
      * The number of features on the cards (e.g. shape, color etc.)
      */
@@ -66,6 +86,16 @@ public class Config {
      */
     public final long turnTimeoutWarningMillis;
 
+    /**
+     * The number of milliseconds between updates of the countdown (or elapsed time) display
+     */
+    public final long displayRefreshMillis;
+
+    /**
+     * The number of milliseconds between updates of the countdown display during the warning period
+     */
+    public final long warningDisplayRefreshMillis;
+
     /**
      * The number of milliseconds a player gets frozen for when he scores a point
      */
@@ -77,15 +107,83 @@ public class Config {
     public final long pointFreezeMillis;
 
     /**
-     * The number of milliseconds to delay before removing/placing a card on the table
+     * The number of milliseconds to delay before removing/placing a card on the table (always 0 when headless)
      */
     public final long tableDelayMillis;
 
     /**
-     * The number of milliseconds to pause at the end of the game before closing
+     * The number of milliseconds to pause at the end of the game before closing (always 0 when headless)
      */
     public final long endGamePauseMillies;
 
+    /**
+     * Whether to run as a simulation: no user interface, no table delays and only computer players
+     */
+    public final boolean headless;
+
+    /**
+     * The number of games to play in headless mode
+     */
+    public final int simulationGames;
+
+    /**
+     * The maximum number of games played concurrently in headless mode (0 for the number of available processors)
+     */
+    public final int simulationThreads;
+
+    /**
+     * The number of tables to host in server mode (0 to play a single game with the swing user interface)
+     */
+    public final int tables;
+
+    /**
+     * The maximum number of tables played concurrently in server mode (0 for all of them): the other tables wait in
+     * order until a table ends
+     */
+    public final int serverThreads;
+
+    /**
+     * The TCP port of the network server in server mode (0 for no network play), and how often the events of every
+     * table are broadcast to its network clients
+     */
+    public final int networkPort;
+    public final long networkTickMillis;
+
+    /**
+     * Whether to run the player threads and the computer players input threads as virtual threads (Java 21+)
+     */
+    public final boolean virtualThreads;
+
+    /**
+     * The seed of the deck shuffling and of the computer players' input (0 for a random seed)
+     */
+    public final long randomSeed;
+
+    /**
+     * Whether to record every game to a journal file that can be replayed
+     */
+    public final boolean journal;
+
+    /**
+     * The strategy of each computer player: random, oracle (always finds a set) or human (finds sets at human speed)
+     */
+    private final String[] computerStrategies;
+
+    /**
+     * The reaction time of the human-like computer players: the mean and standard deviation of the time it takes them
+     * to spot a set, and the time between their key presses
+     */
+    public final long humanReactionMillis;
+    public final long humanReactionDeviationMillis;
+    public final long humanKeyMillis;
+
+    /**
+     * The number of key presses of a player waiting to be handled, and what happens to a key press that does not fit:
+     * drop-newest, drop-oldest or coalesce (a key already waiting cancels it, and the new key is dropped if full)
+     */
+    public final int inputCapacity;
+    public final String inputPolicy;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -132,6 +230,11 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * The number of milliseconds between frames of the user interface (changes made within a frame are batched)
+     */
+    public final long uiFrameMillis;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -155,7 +258,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -186,6 +289,13 @@ public class Config {
         Level logLevel = Level.parse(properties.getProperty("LogLevel", "ALL"));
         String logFormat = properties.getProperty("LogFormat", "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
         Main.setLoggerLevelAndFormat(logger, logLevel, logFormat);
+        String eventLog = properties.getProperty("EventLog", "text").trim();
+        if (!eventLog.equalsIgnoreCase("text") && !eventLog.equalsIgnoreCase("binary"))
+            logger.severe("warning: unknown event log " + eventLog + ", using the text log.");
+        binaryEventLog = eventLog.equalsIgnoreCase("binary");
+        eventLogCapacity = Integer.parseInt(properties.getProperty("EventLogCapacity", "65536"));
+        metricsJmx = Boolean.parseBoolean(properties.getProperty("MetricsJmx", "True"));
+        metricsDumpMillis = (long) (Double.parseDouble(properties.getProperty("MetricsDumpSeconds", "10")) * 1000.0);
 
         // for debugging
         randomSpinMin = Long.parseLong(properties.getProperty("RandomSpinMin", "0"));
@@ -204,12 +314,54 @@ public class Config {
         players = humanPlayers + computerPlayers;
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        headless = Boolean.parseBoolean(properties.getProperty("Headless", "False"));
+        simulationGames = Integer.parseInt(properties.getProperty("SimulationGames", "1"));
+        int threads = Integer.parseInt(properties.getProperty("SimulationThreads", "0"));
+        simulationThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        tables = Integer.parseInt(properties.getProperty("Tables", "0"));
+        serverThreads = Integer.parseInt(properties.getProperty("ServerThreads", "0"));
+        networkPort = Integer.parseInt(properties.getProperty("NetworkPort", "0"));
+        networkTickMillis = Math.max(1, (long) (Double.parseDouble(properties.getProperty("NetworkTickSeconds", "0.05")) * 1000.0));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
+        displayRefreshMillis = Math.max(1, (long) (Double.parseDouble(properties.getProperty("DisplayRefreshSeconds", "1")) * 1000.0));
+        warningDisplayRefreshMillis = Math.max(1, (long) (Double.parseDouble(properties.getProperty("WarningDisplayRefreshSeconds", "0.01")) * 1000.0));
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
-        tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
-        endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        tableDelayMillis = headless ? 0 : (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
+        endGamePauseMillies = headless ? 0 : (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        String threadModel = properties.getProperty("ThreadModel", "platform").trim();
+        if (threadModel.equalsIgnoreCase("virtual") && !Threads.virtualThreadsSupported())
+            logger.severe("warning: virtual threads are not supported by this JVM, using platform threads.");
+        else if (!threadModel.equalsIgnoreCase("virtual") && !threadModel.equalsIgnoreCase("platform"))
+            logger.severe("warning: unknown thread model " + threadModel + ", using platform threads.");
+        virtualThreads = threadModel.equalsIgnoreCase("virtual") && Threads.virtualThreadsSupported();
+        randomSeed = Long.parseLong(properties.getProperty("RandomSeed", "0"));
+        journal = Boolean.parseBoolean(properties.getProperty("Journal", "False"));
+        String[] strategies = properties.getProperty("ComputerStrategies", "random").split(",");
+        computerStrategies = new String[players];
+        for (int i = humanPlayers; i < players; i++) {
+            // the computer players without a strategy of their own use the last one
+            String strategy = strategies[Math.min(i - humanPlayers, strategies.length - 1)].trim().toLowerCase();
+            if (!strategy.equals("random") && !strategy.equals("oracle") && !strategy.equals("human")) {
+                logger.severe("warning: unknown computer strategy " + strategy + " for player " + (i + 1) + ", using random.");
+                strategy = "random";
+            }
+            computerStrategies[i] = strategy;
+        }
+        humanReactionMillis = (long) (Double.parseDouble(properties.getProperty("HumanReactionSeconds", "2")) * 1000.0);
+        humanReactionDeviationMillis = (long) (Double.parseDouble(properties.getProperty("HumanReactionDeviationSeconds", "0.5")) * 1000.0);
+        humanKeyMillis = (long) (Double.parseDouble(properties.getProperty("HumanKeySeconds", "0.2")) * 1000.0);
+        int capacity = Integer.parseInt(properties.getProperty("InputCapacity", "0"));
+        inputCapacity = capacity > 0 ? capacity : featureSize;
+        String policy = properties.getProperty("InputPolicy", "drop-newest").trim().toLowerCase();
+        if (!policy.equals("drop-newest") && !policy.equals("drop-oldest") && !policy.equals("coalesce")) {
+            logger.severe("warning: unknown input policy " + policy + ", using drop-newest.");
+            policy = "drop-newest";
+        }
+        inputPolicy = policy;
+        if (headless && humanPlayers > 0)
+            logger.severe("warning: running headless with " + humanPlayers + " human players that cannot provide input");
 
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
@@ -224,6 +376,7 @@ public class Config {
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        uiFrameMillis = Math.max(1, (long) (Double.parseDouble(properties.getProperty("FrameSeconds", "0.016")) * 1000.0));
 
         // keyboard input data
         playerKeys = new int[players][rows * columns];
@@ -241,6 +394,13 @@ public class Config {
         }
     }
 
+    /**
+     * @return - the strategy of a computer player (random, oracle or human).
+     */
+    public String computerStrategy(int player) {
+        return computerStrategies[player] != null ? computerStrategies[player] : "random";
+    }
+
     public int[] playerKeys(int player) {
         return playerKeys[player];
     }
@@ -8,11 +8,17 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final Metrics metrics;
 
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, new Metrics());
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, Metrics metrics) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.metrics = metrics;
     }
 }
@@ -0,0 +1,90 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.GameJournal;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * A single game: a table with its own environment, dealer and players. A game holds no static state and shares only
+ * what it is given (the logger, the utilities and the metrics), so any number of games can be played in one process.
+ */
+public class Game implements Runnable {
+
+    private final Env env;
+    private final Player[] players;
+    private final Table table;
+    private final Dealer dealer;
+
+    /**
+     * True iff the game was closed before it ended (e.g. its window was closed).
+     */
+    private volatile boolean closed;
+
+    /**
+     * Creates the game entities (no threads are started until the game is run).
+     *
+     * @param seed    - the seed of the deck shuffling.
+     * @param journal - the journal to record the game to (null to not record it).
+     * @param ui      - creates the user interface of the game (called once, with the game whose players are not
+     *                  created yet: the players array is filled later).
+     */
+    public Game(Logger logger, Config config, Util util, Metrics metrics, long seed, GameJournal journal,
+                Function<Game, UserInterface> ui) {
+        this.players = new Player[config.players];
+        this.env = new Env(logger, config, ui.apply(this), util, metrics);
+        this.table = new Table(env);
+        this.dealer = new Dealer(env, table, players, seed, journal);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < config.humanPlayers);
+    }
+
+    /**
+     * Plays the game on the calling thread until the dealer terminates.
+     */
+    @Override
+    public void run() {
+        if (!closed)
+            dealer.run();
+    }
+
+    /**
+     * Ends the game early (the thread running it returns soon after).
+     */
+    public void close() {
+        closed = true;
+        dealer.terminate();
+    }
+
+    public boolean closed() {
+        return closed;
+    }
+
+    public Env env() {
+        return env;
+    }
+
+    public Player[] players() {
+        return players;
+    }
+
+    public Table table() {
+        return table;
+    }
+
+    /**
+     * @return - the game's winners, scores and moves (tokens placed or removed by all the players).
+     */
+    public Tournament.Result result() {
+        int[] scores = new int[players.length];
+        long moves = 0;
+        for (Player player : players) {
+            scores[player.id] = player.score();
+            moves += player.moves();
+        }
+        return new Tournament.Result(dealer.winners(), scores, moves);
+    }
+}
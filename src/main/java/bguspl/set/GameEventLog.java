@@ -0,0 +1,212 @@
+package bguspl.set;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * A binary log of game events. Game threads record fixed size events (a type and two numbers) into a lock-free ring
+ * buffer, without formatting or allocating anything. A background thread drains the buffer into a file, and the file
+ * is only turned into text when read (see main). If the buffer is full, events are dropped and counted instead of
+ * blocking the game.
+ */
+public class GameEventLog {
+
+    /**
+     * The types of events. Every event has two values, a and b, whose meaning depends on the type.
+     */
+    public enum Type {
+        PLACE_CARD("placing card %2$d in slot %1$d"),
+        REMOVE_CARD("removing card from slot %1$d"),
+        PLACE_TOKEN("player %1$d placing token on slot %2$d"),
+        REMOVE_ALL_TOKENS("removing all tokens"),
+        REMOVE_TOKENS("removing tokens from slot %1$d"),
+        REMOVE_TOKEN("removing player %1$d token from slot %2$d"),
+        COUNTDOWN("updating countdown to %2$d (warn: %1$d)"),
+        ELAPSED("updating elapsed time to %2$d"),
+        FREEZE("setting player %1$d freeze to %2$d"),
+        SCORE("setting player %1$d score to %2$d"),
+        WINNER("announcing winner: player %1$d"),
+        DISPOSE("disposing of user interface elements"),
+        DROPPED("%2$d events were dropped (buffer full)");
+
+        private final String format;
+
+        Type(String format) {
+            this.format = format;
+        }
+
+        public String format(long a, long b) {
+            return String.format(format, a, b);
+        }
+    }
+
+    private static final int MAGIC = 0x5e7e1061;
+    private static final long DRAIN_INTERVAL_MILLIS = 10;
+    private static final Type[] TYPES = Type.values();
+
+    private final int mask;
+    private final long[] times;
+    private final int[] types;
+    private final long[] as;
+    private final long[] bs;
+
+    /**
+     * published[i] == sequence iff the event with that sequence number was fully written to index i.
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * The next sequence number to claim (producers) and to write to the file (the writer thread).
+     */
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    private final DataOutputStream out;
+    private final Thread writer;
+    private final Logger logger;
+    private volatile boolean closed;
+
+    /**
+     * Opens the log file and starts the writer thread.
+     *
+     * @param logger   - the logger to report errors to.
+     * @param file     - the file to write to.
+     * @param capacity - the number of events the buffer holds (rounded up to a power of two).
+     * @throws IOException - if the file cannot be created.
+     */
+    public GameEventLog(Logger logger, Path file, int capacity) throws IOException {
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.mask = size - 1;
+        this.times = new long[size];
+        this.types = new int[size];
+        this.as = new long[size];
+        this.bs = new long[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            published.set(i, -1);
+        this.logger = logger;
+
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        out.writeInt(MAGIC);
+        this.writer = new Thread(this::drainLoop, "event-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Records an event (never blocks).
+     */
+    public void record(Type type, long a, long b) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - written.get() > mask) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) sequence & mask;
+        times[index] = System.currentTimeMillis();
+        types[index] = type.ordinal();
+        as[index] = a;
+        bs[index] = b;
+        published.set(index, sequence); // publishes the fields written above
+    }
+
+    private void drainLoop() {
+        while (!closed) {
+            drain();
+            try {
+                Thread.sleep(DRAIN_INTERVAL_MILLIS);
+            } catch (InterruptedException ignored) {
+                // closing (checked by the loop)
+            }
+        }
+    }
+
+    /**
+     * Writes all the published events to the file (called by the writer thread only).
+     */
+    private void drain() {
+        try {
+            long next = written.get();
+            while (published.get((int) next & mask) == next) {
+                int index = (int) next & mask;
+                writeEvent(times[index], types[index], as[index], bs[index]);
+                written.set(++next);
+            }
+            long lost = dropped.sumThenReset();
+            if (lost > 0)
+                writeEvent(System.currentTimeMillis(), Type.DROPPED.ordinal(), 0, lost);
+            out.flush();
+        } catch (IOException e) {
+            logger.severe("cannot write the event log: " + e.getMessage());
+            closed = true;
+        }
+    }
+
+    private void writeEvent(long time, int type, long a, long b) throws IOException {
+        out.writeLong(time);
+        out.writeByte(type);
+        out.writeLong(a);
+        out.writeLong(b);
+    }
+
+    /**
+     * Writes the remaining events, stops the writer thread and closes the file.
+     */
+    public void close() {
+        closed = true;
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException ignored) {}
+        drain();
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.severe("cannot close the event log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prints a binary event log as text.
+     *
+     * @param args - the path of the event log file.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: GameEventLog <file.events>");
+            return;
+        }
+        SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss.SSS");
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Paths.get(args[0]))))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException(args[0] + " is not an event log");
+            while (true) {
+                long time = in.readLong();
+                Type type = TYPES[in.readByte()];
+                long a = in.readLong();
+                long b = in.readLong();
+                System.out.println("[" + format.format(new Date(time)) + "] " + type.format(a, b));
+            }
+        } catch (EOFException ignored) {
+            // end of log
+        }
+    }
+}
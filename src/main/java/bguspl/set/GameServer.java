@@ -0,0 +1,253 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hosts many tables (games) in one process. Every table has its own config: the common properties, overridden by the
+ * properties prefixed with "Table" and the table number (e.g. Table2.ComputerPlayers=4). The dealers of all the tables
+ * run on one shared pool of workers. A worker plays a whole game (the players' threads are not pooled), so the pool is
+ * FIFO admission control rather than fair scheduling: at most config.serverThreads tables are played at a time, the
+ * next table starts when one ends, and the tables being played share the CPU through the OS scheduler. The tables
+ * share the server's log (every message is prefixed with its table) and one registry of metrics (the gauges of every
+ * table are prefixed with it too).
+ */
+public class GameServer {
+
+    private static final Pattern TABLE_PROPERTY = Pattern.compile("Table(\\d+)\\.(.+)");
+
+    /**
+     * Gives the tables their user interfaces and learns about their games (e.g. to let remote clients play them).
+     */
+    public interface Host {
+
+        /**
+         * Called while the game of a table is created.
+         *
+         * @param table - the table number (from 1).
+         * @return - the user interface of the table.
+         */
+        UserInterface userInterface(int table);
+
+        /**
+         * Called once the game of a table is created, before it is played.
+         */
+        default void hosted(int table, Game game) {}
+    }
+
+    private final Logger logger;
+    private final Properties properties;
+    private final Config config;
+
+    private final Host host;
+
+    /**
+     * The metrics of all the tables together.
+     */
+    private final Metrics metrics;
+
+    /**
+     * The name of the server's log files (without the extension), next to which the tables with EventLog=binary write
+     * their event logs (null to log their events as text).
+     */
+    private final String logName;
+
+    /**
+     * The binary event logs of the tables that have one (closed when the table ends).
+     */
+    private final Map<Integer, GameEventLog> eventLogs = new ConcurrentHashMap<>();
+
+    /**
+     * The utilities of every card configuration (feature size and count), shared by the tables that have it.
+     */
+    private final Map<String, Util> utils = new HashMap<>();
+
+    private final List<Game> games = new ArrayList<>();
+    private volatile boolean terminate;
+
+    /**
+     * Creates a server whose tables have no user interface (they are only logged).
+     */
+    public GameServer(Logger logger, Properties properties) {
+        this(logger, properties, table -> new UserInterfaceHeadless(), new Metrics(), null);
+    }
+
+    /**
+     * @param properties - the common properties and the overrides of the tables.
+     * @param host       - gives the tables their user interfaces.
+     * @param metrics    - the registry of the tables' metrics.
+     * @param logName    - the name of the server's log files, without the extension (null to log the events of
+     *                     every table as text).
+     */
+    public GameServer(Logger logger, Properties properties, Host host, Metrics metrics, String logName) {
+        this.logger = logger;
+        this.properties = properties;
+        this.config = new Config(logger, properties);
+        this.host = host;
+        this.metrics = metrics;
+        this.logName = logName;
+    }
+
+    /**
+     * Plays a game on every table, up to config.serverThreads tables at a time (the others wait in order for a table to
+     * end), and waits for all of them to end.
+     */
+    public void run() {
+        AtomicInteger workerNumber = new AtomicInteger();
+        ThreadFactory workerFactory = task -> Threads.newThread(config, task, "table-worker-" + workerNumber.incrementAndGet());
+        ExecutorService workers = config.serverThreads > 0
+                ? Executors.newFixedThreadPool(config.serverThreads, workerFactory)
+                : Executors.newCachedThreadPool(workerFactory);
+        metrics.start(logger, config, "server");
+        try {
+            List<Future<Tournament.Result>> results = new ArrayList<>(config.tables);
+            for (int table = 1; table <= config.tables; table++) {
+                Game game = createTable(table);
+                int number = table;
+                results.add(workers.submit(() -> play(number, game)));
+            }
+            long start = System.nanoTime();
+            for (int table = 1; table <= config.tables; table++) {
+                try {
+                    Tournament.Result result = results.get(table - 1).get();
+                    logger.severe("table " + table + " ended: winners " + Arrays.toString(result.winners) + ", scores "
+                            + Arrays.toString(result.scores) + ", " + result.moves + " moves");
+                } catch (ExecutionException e) {
+                    logger.severe("table " + table + " failed: " + e.getCause());
+                }
+            }
+            String report = String.format("server: %d tables ended in %.3f seconds", config.tables, (System.nanoTime() - start) / 1e9);
+            logger.severe(report);
+            System.out.println(report);
+        } catch (InterruptedException e) {
+            logger.severe("server was interrupted");
+            terminate();
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdown();
+            metrics.stop(logger);
+        }
+    }
+
+    /**
+     * Creates the game of a table from its config (the common properties with the table's overrides).
+     */
+    private Game createTable(int table) {
+        Logger tableLogger = new TableLogger(logger, table);
+        Config tableConfig = new Config(tableLogger, tableProperties(properties, table));
+        Util util = utils.computeIfAbsent(tableConfig.featureSize + "x" + tableConfig.featureCount, key -> new UtilImpl(tableConfig));
+        long seed = tableConfig.randomSeed != 0 ? tableConfig.randomSeed + table : Dealer.newSeed(0);
+        GameEventLog events = eventLog(tableLogger, tableConfig, table);
+        Game game = new Game(tableLogger, tableConfig, util, metrics.scope("table" + table + "."), seed, null,
+                g -> new UserInterfaceDecorator(tableLogger, util, host.userInterface(table), events));
+        synchronized (games) {
+            games.add(game);
+        }
+        host.hosted(table, game);
+        return game;
+    }
+
+    private Tournament.Result play(int table, Game game) {
+        try {
+            if (!terminate) {
+                logger.info("table " + table + " starting");
+                game.run();
+            }
+        } finally {
+            game.env().metrics.removeGauges();
+            GameEventLog events = eventLogs.remove(table);
+            if (events != null)
+                events.close();
+        }
+        return game.result();
+    }
+
+    /**
+     * @return - the binary event log of a table with EventLog=binary (logName.tableN.events), or null to log its
+     *           events as text.
+     */
+    private GameEventLog eventLog(Logger tableLogger, Config tableConfig, int table) {
+        if (!tableConfig.binaryEventLog)
+            return null;
+        if (logName == null) {
+            tableLogger.severe("warning: EventLog=binary needs the server's log files, using the text log");
+            return null;
+        }
+        try {
+            GameEventLog events = new GameEventLog(tableLogger, Paths.get(logName + ".table" + table + ".events"),
+                    tableConfig.eventLogCapacity);
+            eventLogs.put(table, events);
+            return events;
+        } catch (IOException e) {
+            tableLogger.severe("error creating the event log: " + e.getMessage() + ", using the text log");
+            return null;
+        }
+    }
+
+    /**
+     * Closes all the tables (the tables that did not start yet are not played).
+     */
+    public void terminate() {
+        terminate = true;
+        synchronized (games) {
+            for (Game game : games)
+                game.close();
+        }
+    }
+
+    /**
+     * @return - the properties of a table: the common properties, overridden by the properties of the table.
+     */
+    static Properties tableProperties(Properties properties, int table) {
+        Properties tableProperties = new Properties();
+        for (String key : properties.stringPropertyNames())
+            if (!TABLE_PROPERTY.matcher(key).matches())
+                tableProperties.setProperty(key, properties.getProperty(key));
+        for (String key : properties.stringPropertyNames()) {
+            Matcher matcher = TABLE_PROPERTY.matcher(key);
+            if (matcher.matches() && Integer.parseInt(matcher.group(1)) == table)
+                tableProperties.setProperty(matcher.group(2), properties.getProperty(key));
+        }
+        return tableProperties;
+    }
+
+    /**
+     * The logger of a table: prefixes the messages with the table number and passes them to the server's log.
+     * The table's config sets its own log level.
+     */
+    private static class TableLogger extends Logger {
+
+        private final String prefix;
+
+        TableLogger(Logger server, int table) {
+            super(server.getName() + ".table" + table, null);
+            this.prefix = "table " + table + ": ";
+            setParent(server);
+        }
+
+        @Override
+        public void log(LogRecord record) {
+            record.setMessage(prefix + record.getMessage());
+            super.log(record);
+        }
+    }
+}
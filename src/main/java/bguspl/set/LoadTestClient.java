@@ -0,0 +1,186 @@
+package bguspl.set;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A load test of the NetworkServer: simulates remote players that press random keys at a fixed total rate, and
+ * reports the frames and events received and the latency from a key press to the broadcast of its token (which
+ * includes the time the player is frozen, as its key presses wait in its input ring meanwhile).
+ * <p>
+ * Usage: LoadTestClient port tables players seconds keysPerSecond (connects to the loopback address, and joins
+ * players 0 to players - 1 of every table 1 to tables; the tables need that many human players).
+ */
+public class LoadTestClient {
+
+    /**
+     * A remote player: the reading of the server's frames runs on its own thread.
+     */
+    private static class Connection implements Runnable {
+
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final int player;
+        private final Metrics metrics;
+        private final CountDownLatch joined;
+
+        /**
+         * When every key was pressed (in nanoseconds, 0 if its token was broadcast since).
+         */
+        private AtomicLongArray pressed;
+        private volatile int slots;
+
+        Connection(int port, int table, int player, Metrics metrics, CountDownLatch joined) throws IOException {
+            this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            this.player = player;
+            this.metrics = metrics;
+            this.joined = joined;
+            out.writeInt(1 + 2 * Integer.BYTES);
+            out.writeByte(NetworkServer.JOIN);
+            out.writeInt(table);
+            out.writeInt(player);
+            out.flush();
+        }
+
+        /**
+         * Presses a random key (the sending thread only).
+         */
+        void press(Random random) throws IOException {
+            if (slots == 0) return;
+            int slot = random.nextInt(slots);
+            pressed.compareAndSet(slot, 0, System.nanoTime());
+            out.writeInt(1 + Integer.BYTES);
+            out.writeByte(NetworkServer.KEY);
+            out.writeInt(slot);
+            out.flush();
+        }
+
+        @Override
+        public void run() {
+            Metrics.Counter frames = metrics.counter("frames");
+            Metrics.Counter events = metrics.counter("events");
+            Metrics.Counter bytes = metrics.counter("bytes");
+            Metrics.Histogram latency = metrics.histogram("latencyNanos");
+            try {
+                while (true) {
+                    int length = in.readInt();
+                    byte kind = in.readByte();
+                    frames.increment();
+                    bytes.add(Integer.BYTES + length);
+                    if (kind == NetworkServer.WELCOME) {
+                        in.readInt(); // table
+                        in.readInt(); // player
+                        int rows = in.readInt(), columns = in.readInt();
+                        in.readInt(); // players
+                        pressed = new AtomicLongArray(rows * columns);
+                        slots = rows * columns;
+                        joined.countDown();
+                    } else if (kind == NetworkServer.REJECT) {
+                        System.out.println("player " + player + " was rejected: reason " + in.readInt());
+                        joined.countDown();
+                    } else if (kind == NetworkServer.EVENTS) {
+                        int count = in.readInt();
+                        events.add(count);
+                        for (int i = 0; i < count; i++) {
+                            int type = in.readByte();
+                            int a = in.readInt(), b = in.readInt();
+                            boolean token = type == GameEventLog.Type.PLACE_TOKEN.ordinal() || type == GameEventLog.Type.REMOVE_TOKEN.ordinal();
+                            if (token && a == player + 1 && b < slots) {
+                                long time = pressed.getAndSet(b, 0);
+                                if (time != 0) latency.record(System.nanoTime() - time);
+                            }
+                        }
+                    } else {
+                        in.skipBytes(length - 1);
+                    }
+                }
+            } catch (EOFException e) {
+                // the server closed the connection (e.g. all the tables ended)
+            } catch (IOException e) {
+                if (!socket.isClosed()) System.out.println("player " + player + " connection failed: " + e);
+            } finally {
+                joined.countDown();
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 5) {
+            System.out.println("usage: LoadTestClient port tables players seconds keysPerSecond");
+            return;
+        }
+        int port = Integer.parseInt(args[0]);
+        int tables = Integer.parseInt(args[1]);
+        int players = Integer.parseInt(args[2]);
+        double seconds = Double.parseDouble(args[3]);
+        double keysPerSecond = Double.parseDouble(args[4]);
+
+        Metrics metrics = new Metrics();
+        CountDownLatch joined = new CountDownLatch(tables * players);
+        List<Connection> connections = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int table = 1; table <= tables; table++)
+            for (int player = 0; player < players; player++) {
+                Connection connection = new Connection(port, table, player, metrics, joined);
+                connections.add(connection);
+                Thread reader = new Thread(connection, "load-" + table + "-" + player);
+                reader.setDaemon(true);
+                reader.start();
+                readers.add(reader);
+            }
+        if (!joined.await(10, TimeUnit.SECONDS))
+            System.out.println("not all the players joined in time");
+
+        // the keys are sent round robin from this thread, at evenly spaced times
+        Random random = new Random();
+        long interval = (long) (1e9 / keysPerSecond);
+        long start = System.nanoTime(), end = start + (long) (seconds * 1e9), next = start;
+        long sent = 0;
+        for (int i = 0; System.nanoTime() < end; i = (i + 1) % connections.size()) {
+            LockSupport.parkNanos(next - System.nanoTime());
+            next += interval;
+            try {
+                connections.get(i).press(random);
+                sent++;
+            } catch (IOException e) {
+                break; // the server closed the connections
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        Thread.sleep(200); // the last broadcasts
+        connections.forEach(Connection::close);
+
+        Metrics.Histogram latency = metrics.histogram("latencyNanos");
+        System.out.printf("load test: %d players, %d keys in %.3f seconds (%.1f keys/sec)%n",
+                connections.size(), sent, elapsed, sent / elapsed);
+        System.out.printf("  received %d frames (%.1f/sec), %d events (%.1f/sec), %d bytes (%.1f KB/sec)%n",
+                metrics.counter("frames").get(), metrics.counter("frames").get() / elapsed,
+                metrics.counter("events").get(), metrics.counter("events").get() / elapsed,
+                metrics.counter("bytes").get(), metrics.counter("bytes").get() / elapsed / 1024);
+        System.out.printf("  key to token latency: %d samples, p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                latency.count(), latency.percentile(50) / 1e6, latency.percentile(99) / 1e6, latency.max() / 1e6);
+    }
+}
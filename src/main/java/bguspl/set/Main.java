@@ -1,15 +1,17 @@
 package bguspl.set;
 
 import bguspl.set.ex.Dealer;
-import bguspl.set.ex.Player;
-import bguspl.set.ex.Table;
+import bguspl.set.ex.GameJournal;
+import bguspl.set.ex.GameReplay;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Properties;
 import java.util.logging.*;
 
 /**
@@ -17,81 +19,169 @@ import java.util.logging.*;
  */
 public class Main {
 
-    private static Dealer dealer;
-    private static Thread mainThread;
-
-    private static boolean xButtonPressed = false;
-    private static Logger logger;
-
-    public static void xButtonPressed() throws InterruptedException {
-        if (logger != null) logger.severe("exit button pressed");
-        xButtonPressed = true;
-        if (dealer != null) dealer.terminate();
-        mainThread.join();
-    }
-
     /**
      * The game's main function. Creates all data structures and initializes the threads.
      *
-     * @param args - unused.
+     * @param args - empty to play, or --replay followed by a game journal file to replay a recorded game.
      */
     public static void main(String[] args) {
 
-        mainThread = Thread.currentThread();
+        // the name of this run's log files (without the extension)
+        String logName = "./logs/" + new SimpleDateFormat("M-d_HH-mm-ss").format(Calendar.getInstance().getTime());
 
         // create the game environment objects
-        logger = initLogger();
+        Logger logger = initLogger(logName);
         ThreadLogger.logStart(logger, Thread.currentThread().getName());
-        Config config = new Config(logger, "config.properties");
+        if (args.length == 2 && args[0].equals("--replay")) {
+            try {
+                replay(logger, args[1]);
+            } finally {
+                ThreadLogger.logStop(logger, Thread.currentThread().getName());
+                for (Handler h : logger.getHandlers()) h.flush();
+            }
+            return;
+        }
+        Properties properties = Config.loadProperties("config.properties", logger);
+        Config config = new Config(logger, properties);
         Util util = new UtilImpl(config);
 
-        Player[] players = new Player[config.players];
-        UserInterface ui = null;
-        try {
-            ui = new UserInterfaceSwing(logger, config, players);
-        } catch (UnsupportedOperationException | IllegalArgumentException e) {
-            logger.severe("error creating swing user interface: " + e.getMessage());
-            logger.severe("will try to run without user interface");
-            if (config.humanPlayers > 0)
-                logger.severe("warning: running with human players with no user interface");
+        if (config.headless || config.tables > 0) {
+            try {
+                if (config.headless && config.tables > 0)
+                    logger.severe("warning: Tables is ignored in headless mode, simulating " + config.simulationGames + " games instead");
+                if (config.headless)
+                    new Simulation(logger, config, util).run();
+                else
+                    serve(logger, config, properties, logName);
+            } finally {
+                ThreadLogger.logStop(logger, Thread.currentThread().getName());
+                for (Handler h : logger.getHandlers()) h.flush();
+            }
+            return;
         }
-        ui = new UserInterfaceDecorator(logger, util, ui);
 
-        Env env = new Env(logger, config, ui, util);
+        play(logger, config, util, logName);
+    }
+
+    /**
+     * Plays a single game with the swing user interface (if available) until it ends or its window is closed.
+     */
+    private static void play(Logger logger, Config config, Util util, String logName) {
+        Thread mainThread = Thread.currentThread();
+        GameEventLog events = null;
+        if (config.binaryEventLog) {
+            try {
+                events = new GameEventLog(logger, Paths.get(logName + ".events"), config.eventLogCapacity);
+            } catch (IOException e) {
+                logger.severe("error creating the event log: " + e.getMessage() + ", using the text log");
+            }
+        }
+        GameEventLog eventLog = events;
+
+        long seed = Dealer.newSeed(config.randomSeed);
+        GameJournal journal = null;
+        if (config.journal) {
+            try {
+                journal = new GameJournal(logger, Paths.get(logName + ".journal"), config, seed);
+            } catch (IOException e) {
+                logger.severe("error creating the game journal: " + e.getMessage());
+            }
+        }
 
         // create the game entities
-        Table table = new Table(env);
-        dealer = new Dealer(env, table, players);
-        for (int i = 0; i < players.length; i++)
-            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+        Game game = new Game(logger, config, util, new Metrics(), seed, journal, g -> {
+            UserInterface ui = null;
+            try {
+                ui = new UserInterfaceAsync(config, new UserInterfaceSwing(logger, config, g.players(), () -> {
+                    logger.severe("exit button pressed");
+                    g.close();
+                    try {
+                        mainThread.join();
+                    } catch (InterruptedException ignored) {}
+                }));
+            } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                logger.severe("error creating swing user interface: " + e.getMessage());
+                logger.severe("will try to run without user interface");
+                if (config.humanPlayers > 0)
+                    logger.severe("warning: running with human players with no user interface");
+            }
+            return new UserInterfaceDecorator(logger, util, ui, eventLog);
+        });
+        Env env = game.env();
+        env.metrics.start(logger, config, "game");
+        logger.info("dealing with seed " + seed);
 
         // start the dealer thread
-        ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
+        ThreadLogger dealerThread = new ThreadLogger(game, "dealer", logger);
         dealerThread.startWithLog();
 
         try {
             // shutdown stuff
             dealerThread.joinWithLog();
-            if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
+            if (!game.closed() && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
         } catch (InterruptedException ignored) {
         } finally {
             logger.severe("thanks for playing... it was fun!");
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
-            if (!xButtonPressed) env.ui.dispose();
+            if (!game.closed()) env.ui.dispose();
+            if (events != null) events.close();
+            if (journal != null) journal.close();
+            env.metrics.stop(logger);
             for (Handler h : logger.getHandlers()) h.flush();
         }
     }
 
-    private static Logger initLogger() {
+    /**
+     * Hosts config.tables tables until they all end, with network play if config.networkPort is set.
+     */
+    private static void serve(Logger logger, Config config, Properties properties, String logName) {
+        if (config.networkPort <= 0) {
+            new GameServer(logger, properties, table -> new UserInterfaceHeadless(), new Metrics(), logName).run();
+            return;
+        }
+        Metrics metrics = new Metrics();
+        NetworkServer network;
+        try {
+            network = new NetworkServer(logger, config, metrics);
+        } catch (IOException e) {
+            logger.severe("error starting the network server: " + e.getMessage());
+            return;
+        }
+        network.start();
+        try {
+            new GameServer(logger, properties, network, metrics, logName).run();
+        } finally {
+            network.close();
+        }
+    }
+
+    /**
+     * Replays a recorded game and reports whether it ended the same way.
+     *
+     * @param file - the game journal file.
+     */
+    private static void replay(Logger logger, String file) {
+        String report;
+        try {
+            GameJournal.Recording recording = GameJournal.read(Paths.get(file));
+            report = "replay: " + new GameReplay(logger, Config.loadProperties("config.properties", logger), recording).run();
+        } catch (IOException e) {
+            report = "cannot read the game journal: " + e.getMessage();
+        } catch (InterruptedException e) {
+            report = "replay was interrupted";
+        }
+        logger.severe(report);
+        System.out.println(report);
+    }
+
+    private static Logger initLogger(String logName) {
 
-        //just to make our log file nicer :)
-        SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
         FileHandler handler;
         try {
             //noinspection ResultOfMethodCallIgnored
             new File("./logs/").mkdirs();
-            handler = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+            handler = new FileHandler(logName + ".log");
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -109,7 +199,7 @@ public class Main {
         if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
             // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
             @Override
-            public synchronized String format(LogRecord lr) {
+            public String format(LogRecord lr) {
                 return String.format(format, new Date(lr.getMillis()),
                         lr.getLevel().getLocalizedName(), lr.getMessage()
                 );
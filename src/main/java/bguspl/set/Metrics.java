@@ -0,0 +1,308 @@
+package bguspl.set;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * A registry of named counters, gauges and latency histograms. Updating a metric is lock-free and allocation free;
+ * the values are read by JMX and by the periodic dump to the log (see start).
+ */
+public class Metrics {
+
+    /**
+     * A monotonically increasing count.
+     */
+    public static class Counter {
+
+        private final LongAdder count = new LongAdder();
+
+        public void increment() {
+            count.increment();
+        }
+
+        public void add(long value) {
+            count.add(value);
+        }
+
+        public long get() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * A histogram of non-negative values with logarithmic buckets of SUB_BUCKETS / 2 linear sub-buckets each
+     * (like HdrHistogram): every value is counted with a relative error of at most 2 / SUB_BUCKETS.
+     */
+    public static class Histogram {
+
+        private static final int SUB_BUCKET_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int HALF = SUB_BUCKETS / 2;
+        private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - SUB_BUCKET_BITS) * HALF;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public void record(long value) {
+            value = Math.max(value, 0);
+            counts.incrementAndGet(index(value));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        private static int index(long value) {
+            if (value < SUB_BUCKETS)
+                return (int) value;
+            int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return SUB_BUCKETS + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+        }
+
+        /**
+         * @return - the highest value counted in a bucket.
+         */
+        private static long highestValue(int index) {
+            if (index < SUB_BUCKETS)
+                return index;
+            int shift = (index - SUB_BUCKETS) / HALF + 1;
+            long top = (index - SUB_BUCKETS) % HALF + HALF;
+            return ((top + 1) << shift) - 1;
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        public double mean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        /**
+         * @param percentile - between 0 and 100.
+         * @return - the value at the percentile (0 if nothing was recorded).
+         */
+        public long percentile(double percentile) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++)
+                total += counts.get(i);
+            long rank = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank && seen > 0)
+                    return Math.min(highestValue(i), max());
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.0f p50=%d p99=%d max=%d",
+                    count(), mean(), percentile(50), percentile(99), max());
+        }
+    }
+
+    private final Map<String, Counter> counters;
+    private final Map<String, LongSupplier> gauges;
+    private final Map<String, Histogram> histograms;
+
+    /**
+     * The prefix of the names of the gauges registered through this registry (empty unless it is a scope).
+     */
+    private final String gaugePrefix;
+
+    private ObjectName mbeanName;
+    private ScheduledExecutorService dumper;
+
+    public Metrics() {
+        this(new ConcurrentSkipListMap<>(), new ConcurrentSkipListMap<>(), new ConcurrentSkipListMap<>(), "");
+    }
+
+    private Metrics(Map<String, Counter> counters, Map<String, LongSupplier> gauges, Map<String, Histogram> histograms,
+                    String gaugePrefix) {
+        this.counters = counters;
+        this.gauges = gauges;
+        this.histograms = histograms;
+        this.gaugePrefix = gaugePrefix;
+    }
+
+    /**
+     * A view of the registry for one of the games that share it: the counters and histograms are the registry's own
+     * (so they add up over the games), but the gauges are registered under the prefix, so that the games do not
+     * replace each other's gauges.
+     *
+     * @param prefix - the prefix of the names of the gauges (e.g. "table2.").
+     */
+    public Metrics scope(String prefix) {
+        return new Metrics(counters, gauges, histograms, gaugePrefix + prefix);
+    }
+
+    /**
+     * Unregisters the gauges registered through this scope (e.g. once its game ended).
+     */
+    public void removeGauges() {
+        gauges.keySet().removeIf(name -> name.startsWith(gaugePrefix));
+    }
+
+    /**
+     * @return - the counter with the name (created on first use).
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    /**
+     * @return - the histogram with the name (created on first use).
+     */
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Registers a gauge (replacing a previous gauge with the same name, see scope).
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(gaugePrefix + name, value);
+    }
+
+    /**
+     * Exposes the metrics via JMX (if config.metricsJmx) and starts dumping them to the log every
+     * config.metricsDumpMillis (if positive).
+     *
+     * @param name - the name of the MBean (bguspl.set:type=Metrics,name=[name]).
+     */
+    public void start(Logger logger, Config config, String name) {
+        if (config.metricsJmx)
+            registerMBean(logger, name);
+        if (config.metricsDumpMillis > 0)
+            startDump(logger, config.metricsDumpMillis);
+    }
+
+    /**
+     * Stops the periodic dump, logs the metrics one last time and unregisters the MBean.
+     */
+    public void stop(Logger logger) {
+        if (dumper != null)
+            dumper.shutdownNow();
+        logger.info("metrics:" + this);
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (JMException ignored) {}
+        }
+    }
+
+    private void registerMBean(Logger logger, String name) {
+        try {
+            mbeanName = new ObjectName("bguspl.set:type=Metrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), mbeanName);
+        } catch (JMException e) {
+            logger.severe("cannot register the metrics MBean: " + e.getMessage());
+            mbeanName = null;
+        }
+    }
+
+    private void startDump(Logger logger, long periodMillis) {
+        dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> logger.info("metrics:" + this), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        counters.forEach((name, counter) -> sb.append(String.format("%n  %s: %d", name, counter.get())));
+        gauges.forEach((name, gauge) -> sb.append(String.format("%n  %s: %d", name, gauge.getAsLong())));
+        histograms.forEach((name, histogram) -> sb.append(String.format("%n  %s: %s", name, histogram)));
+        return sb.toString();
+    }
+
+    /**
+     * The values of all the metrics as attributes: a counter or a gauge by its name, and a histogram by its name
+     * followed by .count, .mean, .p50, .p99 or .max.
+     */
+    private Map<String, Object> values() {
+        Map<String, Object> values = new ConcurrentSkipListMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.get()));
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        histograms.forEach((name, histogram) -> {
+            values.put(name + ".count", histogram.count());
+            values.put(name + ".mean", histogram.mean());
+            values.put(name + ".p50", histogram.percentile(50));
+            values.put(name + ".p99", histogram.percentile(99));
+            values.put(name + ".max", histogram.max());
+        });
+        return values;
+    }
+
+    private class MetricsMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) {
+            return values().get(attribute);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("metrics are read only");
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Object> values = values();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes)
+                if (values.containsKey(attribute))
+                    list.add(new Attribute(attribute, values.get(attribute)));
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException("no operations");
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            values().forEach((name, value) -> attributes.add(new MBeanAttributeInfo(
+                    name, value.getClass().getName(), name, true, false, false)));
+            return new MBeanInfo(Metrics.class.getName(), "game engine metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Lets remote clients play and watch the tables of a GameServer over TCP. A single thread serves all the connections
+ * with a selector: it passes the key presses of the remote players to their players (so it is the only producer of
+ * their input rings), and broadcasts the events of every table to its clients in one frame per tick.
+ * <p>
+ * Every frame is an int with the length of the rest of the frame, a byte with the kind of the frame and its fields:
+ * <ul>
+ * <li>JOIN (client): int table (from 1), int player (from 0, or -1 to watch). Answered with WELCOME or REJECT.</li>
+ * <li>KEY (client): int slot. A key press of the player the client joined as.</li>
+ * <li>WELCOME (server): int table, int player, int rows, int columns, int players. Followed by the table's current
+ * cards, tokens and scores as an EVENTS frame.</li>
+ * <li>REJECT (server): int reason: NO_TABLE (or the client already joined a table), NO_PLAYER (not a human player of
+ * the table) or PLAYER_TAKEN.</li>
+ * <li>EVENTS (server): int count, and count event records (see UserInterfaceBroadcast).</li>
+ * </ul>
+ */
+public class NetworkServer implements GameServer.Host {
+
+    /**
+     * The kinds of the frames sent by the clients.
+     */
+    static final byte JOIN = 1;
+    static final byte KEY = 2;
+
+    /**
+     * The kinds of the frames sent by the server.
+     */
+    static final byte WELCOME = 1;
+    static final byte REJECT = 2;
+    static final byte EVENTS = 3;
+
+    /**
+     * The reasons of a REJECT frame.
+     */
+    static final int NO_TABLE = 1;
+    static final int NO_PLAYER = 2;
+    static final int PLAYER_TAKEN = 3;
+
+    /**
+     * The largest frame a client may send, and the most bytes queued for a client before it is disconnected as too slow.
+     */
+    private static final int MAX_CLIENT_FRAME = 64;
+    private static final int MAX_QUEUED_BYTES = 1 << 20;
+
+    /**
+     * A table served to the clients.
+     */
+    private static class HostedTable {
+
+        final Game game;
+        final UserInterfaceBroadcast ui;
+        final List<Client> clients = new ArrayList<>();
+
+        /**
+         * The client of every human player (null if none joined as the player).
+         */
+        final Client[] players;
+
+        HostedTable(Game game, UserInterfaceBroadcast ui) {
+            this.game = game;
+            this.ui = ui;
+            this.players = new Client[game.env().config.players];
+        }
+    }
+
+    /**
+     * A connection, and the table and player it joined (if any).
+     */
+    private static class Client {
+
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ByteBuffer in = ByteBuffer.allocate(2 * MAX_CLIENT_FRAME);
+        final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        long queuedBytes;
+        HostedTable table;
+        int player = -1;
+
+        Client(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    private final Logger logger;
+    private final Config config;
+    private final Map<Integer, HostedTable> tables = new ConcurrentHashMap<>();
+
+    /**
+     * The user interfaces of the tables whose games are being created (not served yet).
+     */
+    private final Map<Integer, UserInterfaceBroadcast> creating = new ConcurrentHashMap<>();
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private final Metrics.Counter keys;
+    private final Metrics.Counter frames;
+    private final Metrics.Counter bytes;
+    private final Metrics.Counter slowClients;
+    private final Metrics.Histogram tickNanos;
+    private volatile int clients;
+
+    /**
+     * Starts listening on config.networkPort (the clients are served once start is called).
+     */
+    public NetworkServer(Logger logger, Config config, Metrics metrics) throws IOException {
+        this.logger = logger;
+        this.config = config;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(config.networkPort));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.thread = new Thread(this::run, "network");
+        this.keys = metrics.counter("network.keys");
+        this.frames = metrics.counter("network.frames");
+        this.bytes = metrics.counter("network.bytes");
+        this.slowClients = metrics.counter("network.slowClients");
+        this.tickNanos = metrics.histogram("network.tickNanos");
+        metrics.gauge("network.clients", () -> clients);
+    }
+
+    /**
+     * @return - the user interface that broadcasts the table's events (once the table is hosted).
+     */
+    @Override
+    public UserInterface userInterface(int table) {
+        UserInterfaceBroadcast ui = new UserInterfaceBroadcast();
+        creating.put(table, ui);
+        return ui;
+    }
+
+    /**
+     * Serves a table to the clients: only once its game is fully created.
+     */
+    @Override
+    public void hosted(int table, Game game) {
+        tables.put(table, new HostedTable(game, creating.remove(table)));
+    }
+
+    public void start() {
+        logger.severe("network server listening on port " + port());
+        thread.start();
+    }
+
+    /**
+     * @return - the port the server listens on (the one chosen by the system if config.networkPort is 0).
+     */
+    int port() {
+        try {
+            return ((InetSocketAddress) server.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return config.networkPort;
+        }
+    }
+
+    /**
+     * Stops serving, after broadcasting the last events, and closes all the connections.
+     */
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        ThreadLogger.logStart(logger, thread.getName());
+        long nextTick = System.currentTimeMillis() + config.networkTickMillis;
+        try {
+            while (!closed) {
+                selector.select(Math.max(1, nextTick - System.currentTimeMillis()));
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else {
+                        Client client = (Client) key.attachment();
+                        try {
+                            if (key.isReadable()) read(client);
+                            if (key.isValid() && key.isWritable()) flush(client);
+                        } catch (RuntimeException e) {
+                            logger.severe("network: closing a client that failed: " + e);
+                            disconnect(client);
+                        }
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextTick) {
+                    broadcast();
+                    nextTick = now + config.networkTickMillis;
+                }
+            }
+            broadcast();
+        } catch (IOException e) {
+            logger.severe("network server failed: " + e);
+        } finally {
+            for (SelectionKey key : selector.keys())
+                closeQuietly(key);
+            try {
+                selector.close();
+            } catch (IOException ignored) {}
+            ThreadLogger.logStop(logger, thread.getName());
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Client(channel, key));
+        clients++;
+    }
+
+    private void read(Client client) {
+        try {
+            if (client.channel.read(client.in) < 0) {
+                disconnect(client);
+                return;
+            }
+        } catch (IOException e) {
+            disconnect(client);
+            return;
+        }
+        ByteBuffer in = client.in;
+        in.flip();
+        while (in.remaining() >= Integer.BYTES) {
+            int length = in.getInt(in.position());
+            if (length < 1 || length > MAX_CLIENT_FRAME) {
+                logger.severe("network: closing a client that sent a frame of " + length + " bytes");
+                disconnect(client);
+                return;
+            }
+            if (in.remaining() < Integer.BYTES + length) break;
+            int end = in.position() + Integer.BYTES + length;
+            in.getInt();
+            byte kind = in.get();
+            if (kind == JOIN && end - in.position() >= 2 * Integer.BYTES)
+                join(client, in.getInt(), in.getInt());
+            else if (kind == KEY && end - in.position() >= Integer.BYTES)
+                key(client, in.getInt());
+            else {
+                logger.severe("network: closing a client that sent a malformed frame of kind " + kind);
+                disconnect(client);
+                return;
+            }
+            in.position(end);
+        }
+        in.compact();
+    }
+
+    private void join(Client client, int table, int player) {
+        HostedTable hosted = tables.get(table);
+        Config tableConfig = hosted != null ? hosted.game.env().config : null;
+        int reason = 0;
+        if (hosted == null || client.table != null)
+            reason = NO_TABLE;
+        else if (player < -1 || player >= tableConfig.humanPlayers)
+            reason = NO_PLAYER;
+        else if (player >= 0 && hosted.players[player] != null)
+            reason = PLAYER_TAKEN;
+        if (reason != 0) {
+            send(client, ByteBuffer.allocate(Integer.BYTES + 1 + Integer.BYTES)
+                    .putInt(1 + Integer.BYTES).put(REJECT).putInt(reason).flip());
+            return;
+        }
+
+        client.table = hosted;
+        client.player = player;
+        hosted.clients.add(client);
+        if (player >= 0)
+            hosted.players[player] = client;
+        send(client, ByteBuffer.allocate(Integer.BYTES + 1 + 5 * Integer.BYTES).putInt(1 + 5 * Integer.BYTES).put(WELCOME)
+                .putInt(table).putInt(player).putInt(tableConfig.rows).putInt(tableConfig.columns).putInt(tableConfig.players)
+                .flip());
+        ByteBuffer snapshot = snapshot(hosted.game);
+        if (snapshot != null)
+            send(client, snapshot);
+    }
+
+    /**
+     * @return - an EVENTS frame (null if there is nothing to send) that brings a new client up to date: the cards and
+     *           the tokens on the table and the scores. The events of the current tick are broadcast to the client
+     *           too, so nothing is missed.
+     */
+    private static ByteBuffer snapshot(Game game) {
+        UserInterfaceBroadcast state = new UserInterfaceBroadcast();
+        Table table = game.table();
+        Player[] players = game.players();
+        for (int slot = 0; slot < game.env().config.tableSize; slot++) {
+            int card = table.cardAt(slot);
+            if (card == Table.EMPTY) continue;
+            state.placeCard(card, slot);
+            for (Player player : players)
+                if (table.hasToken(player.id, slot))
+                    state.placeToken(player.id, slot);
+        }
+        for (Player player : players)
+            state.setScore(player.id, player.score());
+        return state.takeFrame();
+    }
+
+    private void key(Client client, int slot) {
+        if (client.player < 0 || slot < 0 || slot >= client.table.game.env().config.tableSize)
+            return;
+        client.table.game.players()[client.player].keyPressed(slot);
+        keys.increment();
+    }
+
+    private void broadcast() {
+        long start = System.nanoTime();
+        for (HostedTable hosted : tables.values()) {
+            ByteBuffer frame = hosted.ui.takeFrame();
+            if (frame == null) continue;
+            for (Client client : new ArrayList<>(hosted.clients))
+                send(client, frame.duplicate());
+        }
+        tickNanos.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Queues a frame for a client and writes as much as the socket takes without blocking.
+     */
+    private void send(Client client, ByteBuffer frame) {
+        if (!client.key.isValid()) return;
+        if (client.queuedBytes + frame.remaining() > MAX_QUEUED_BYTES) {
+            logger.severe("network: closing a client that does not keep up");
+            slowClients.increment();
+            disconnect(client);
+            return;
+        }
+        client.out.add(frame);
+        client.queuedBytes += frame.remaining();
+        frames.increment();
+        flush(client);
+    }
+
+    private void flush(Client client) {
+        try {
+            while (!client.out.isEmpty()) {
+                ByteBuffer frame = client.out.peek();
+                int written = client.channel.write(frame);
+                client.queuedBytes -= written;
+                bytes.add(written);
+                if (frame.hasRemaining()) break;
+                client.out.poll();
+            }
+        } catch (IOException e) {
+            disconnect(client);
+            return;
+        }
+        client.key.interestOps(client.out.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void disconnect(Client client) {
+        if (client.table != null) {
+            client.table.clients.remove(client);
+            if (client.player >= 0)
+                client.table.players[client.player] = null;
+            client.table = null;
+        }
+        if (client.key.isValid()) {
+            closeQuietly(client.key);
+            clients--;
+        }
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {}
+    }
+}
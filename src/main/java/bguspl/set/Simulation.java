@@ -0,0 +1,62 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+
+import java.util.logging.Logger;
+
+/**
+ * Plays headless games (no user interface, no table delays) as a tournament and reports the throughput.
+ * Every game has its own environment, table, dealer and players, so games are fully independent.
+ */
+public class Simulation {
+
+    private final Logger logger;
+    private final Config config;
+    private final Util util;
+
+    /**
+     * The metrics of all the games together.
+     */
+    private final Metrics metrics = new Metrics();
+
+    public Simulation(Logger logger, Config config, Util util) {
+        this.logger = logger;
+        this.config = config;
+        this.util = util;
+    }
+
+    /**
+     * Plays config.simulationGames games, up to config.simulationThreads at a time, and reports the results.
+     */
+    public void run() {
+        Tournament tournament = new Tournament(config.players, config.simulationThreads);
+        metrics.start(logger, config, "simulation");
+        try {
+            String report = "simulation: " + tournament.play(config.simulationGames, this::playGame);
+            logger.severe(report);
+            System.out.println(report);
+        } catch (InterruptedException e) {
+            logger.severe("simulation was interrupted");
+            Thread.currentThread().interrupt();
+        } finally {
+            metrics.stop(logger);
+        }
+    }
+
+    /**
+     * Plays a single game on the calling thread until the dealer terminates.
+     *
+     * @param game - the game number.
+     * @return - the game's winners, scores and moves (tokens placed or removed by all the players).
+     */
+    private Tournament.Result playGame(int game) {
+        long seed = config.randomSeed != 0 ? config.randomSeed + game : Dealer.newSeed(0);
+        Metrics gameMetrics = metrics.scope("game" + game + ".");
+        Game headless = new Game(logger, config, util, gameMetrics, seed, null, g -> new UserInterfaceHeadless());
+
+        logger.info("starting game " + game);
+        headless.run();
+        gameMetrics.removeGauges();
+        return headless.result();
+    }
+}
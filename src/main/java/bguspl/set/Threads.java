@@ -0,0 +1,60 @@
+package bguspl.set;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Creates the player threads, either as platform threads or as virtual threads (see Config.virtualThreads).
+ * Virtual threads are looked up at runtime, so the game still builds and runs on JDKs without them (before 21).
+ */
+public final class Threads {
+
+    private static final MethodHandle ofVirtual;
+    private static final MethodHandle name;
+    private static final MethodHandle unstarted;
+
+    static {
+        MethodHandle ofVirtualHandle = null, nameHandle = null, unstartedHandle = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Class<?> ofVirtualBuilder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            ofVirtualHandle = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtualBuilder));
+            nameHandle = lookup.findVirtual(builder, "name", MethodType.methodType(builder, String.class));
+            unstartedHandle = lookup.findVirtual(builder, "unstarted", MethodType.methodType(Thread.class, Runnable.class));
+        } catch (ReflectiveOperationException ignored) {
+            // running on a JDK without virtual threads
+        }
+        ofVirtual = ofVirtualHandle;
+        name = nameHandle;
+        unstarted = unstartedHandle;
+    }
+
+    private Threads() {}
+
+    /**
+     * @return - true iff the running JDK supports virtual threads.
+     */
+    public static boolean virtualThreadsSupported() {
+        return ofVirtual != null;
+    }
+
+    /**
+     * Creates a new (unstarted) thread.
+     *
+     * @param config - the game configuration (decides between platform and virtual threads).
+     * @param target - the code the thread runs.
+     * @param name   - the name of the thread.
+     * @return - the new thread.
+     */
+    public static Thread newThread(Config config, Runnable target, String name) {
+        if (!config.virtualThreads)
+            return new Thread(target, name);
+        try {
+            return (Thread) unstarted.invoke(Threads.name.invoke(ofVirtual.invoke(), name), target);
+        } catch (Throwable e) {
+            throw new IllegalStateException("cannot create virtual thread " + name, e);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Plays many independent games concurrently on a bounded pool of threads and aggregates their results.
+ */
+public class Tournament {
+
+    /**
+     * The outcome of a single game.
+     */
+    public static class Result {
+
+        public final int[] winners;
+        public final int[] scores;
+        public final long moves;
+
+        public Result(int[] winners, int[] scores, long moves) {
+            this.winners = winners;
+            this.scores = scores;
+            this.moves = moves;
+        }
+    }
+
+    /**
+     * The aggregated outcome of all the games.
+     */
+    public static class Summary {
+
+        public final int games;
+        public final long[] wins;
+        public final long[] totalScores;
+        public final long draws;
+        public final long moves;
+        public final double seconds;
+
+        private Summary(int games, long[] wins, long[] totalScores, long draws, long moves, double seconds) {
+            this.games = games;
+            this.wins = wins;
+            this.totalScores = totalScores;
+            this.draws = draws;
+            this.moves = moves;
+            this.seconds = seconds;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format(
+                    "%d games, %d moves in %.3f seconds (%.2f games/sec, %.1f moves/sec), %d draws",
+                    games, moves, seconds, games / seconds, moves / seconds, draws));
+            for (int player = 0; player < wins.length; player++)
+                sb.append(String.format("%n  player %d: %d wins, average score %.2f",
+                        player + 1, wins[player], (double) totalScores[player] / games));
+            return sb.toString();
+        }
+    }
+
+    private final int players;
+    private final int threads;
+
+    /**
+     * @param players - the number of players in every game.
+     * @param threads - the maximum number of games played at the same time.
+     */
+    public Tournament(int players, int threads) {
+        this.players = players;
+        this.threads = threads;
+    }
+
+    /**
+     * Plays the games and waits for all of them to end.
+     *
+     * @param games - the number of games to play.
+     * @param game  - plays the game with the given number to its end, on the calling thread.
+     * @return - the aggregated results.
+     * @throws InterruptedException - if interrupted while waiting for the games (the remaining games are cancelled).
+     */
+    public Summary play(int games, IntFunction<Result> game) throws InterruptedException {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                r -> new Thread(r, "tournament-" + threadNumber.incrementAndGet()));
+        long start = System.nanoTime();
+        try {
+            List<Future<Result>> futures = new ArrayList<>(games);
+            for (int i = 0; i < games; i++) {
+                int number = i;
+                futures.add(executor.submit(() -> game.apply(number)));
+            }
+
+            long[] wins = new long[players];
+            long[] totalScores = new long[players];
+            long draws = 0, moves = 0;
+            for (Future<Result> future : futures) {
+                Result result = future.get();
+                if (result.winners.length > 1) draws++;
+                for (int winner : result.winners)
+                    wins[winner]++;
+                for (int player = 0; player < result.scores.length; player++)
+                    totalScores[player] += result.scores[player];
+                moves += result.moves;
+            }
+            return new Summary(games, wins, totalScores, draws, moves, (System.nanoTime() - start) / 1e9);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("a tournament game failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package bguspl.set;
+
+import javax.swing.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A user interface that decouples the game threads from rendering. Every call only records the latest requested
+ * state of the element it changes (a slot, a token, a player's score etc.) and returns at once. Once per frame the
+ * changes made since the previous frame are applied to the wrapped user interface on the Swing event dispatch thread,
+ * so several changes to the same element within a frame cost a single update.
+ */
+public class UserInterfaceAsync implements UserInterface {
+
+    private static final int NO_CHANGE = -2;
+    private static final int NO_CARD = -1;
+    private static final int TOKEN_PLACED = 1;
+    private static final int TOKEN_REMOVED = 2;
+    private static final long NO_TIME_CHANGE = Long.MIN_VALUE;
+
+    private final UserInterface ui;
+    private final Config config;
+    private final Timer frameTimer;
+
+    /**
+     * True iff something changed since the last frame.
+     */
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    /**
+     * The card to show in every slot (NO_CARD for an empty slot, NO_CHANGE if not changed).
+     */
+    private final AtomicIntegerArray cards;
+
+    /**
+     * The token of player p on slot s at index p * tableSize + s (TOKEN_PLACED, TOKEN_REMOVED or 0 if not changed).
+     */
+    private final AtomicIntegerArray tokens;
+
+    /**
+     * The countdown as (millies << 1 | warn), or NO_TIME_CHANGE.
+     */
+    private final AtomicLong countdown = new AtomicLong(NO_TIME_CHANGE);
+    private final AtomicLong elapsed = new AtomicLong(NO_TIME_CHANGE);
+    private final AtomicLongArray freezes;
+    private final AtomicIntegerArray scores;
+    private final AtomicReference<int[]> winners = new AtomicReference<>();
+
+    public UserInterfaceAsync(Config config, UserInterface ui) {
+        this.ui = ui;
+        this.config = config;
+        this.cards = filled(new AtomicIntegerArray(config.tableSize), NO_CHANGE);
+        this.tokens = new AtomicIntegerArray(config.players * config.tableSize);
+        this.freezes = new AtomicLongArray(config.players);
+        for (int player = 0; player < config.players; player++)
+            freezes.set(player, NO_TIME_CHANGE);
+        this.scores = filled(new AtomicIntegerArray(config.players), NO_CHANGE);
+
+        frameTimer = new Timer((int) config.uiFrameMillis, e -> applyChanges());
+        frameTimer.setCoalesce(true);
+        frameTimer.start();
+    }
+
+    private static AtomicIntegerArray filled(AtomicIntegerArray array, int value) {
+        for (int i = 0; i < array.length(); i++)
+            array.set(i, value);
+        return array;
+    }
+
+    /**
+     * Applies all the changes recorded since the last frame (called on the event dispatch thread).
+     */
+    private void applyChanges() {
+        if (!dirty.getAndSet(false))
+            return;
+
+        for (int slot = 0; slot < cards.length(); slot++) {
+            int card = cards.getAndSet(slot, NO_CHANGE);
+            if (card == NO_CARD) ui.removeCard(slot);
+            else if (card != NO_CHANGE) ui.placeCard(card, slot);
+        }
+        for (int i = 0; i < tokens.length(); i++) {
+            int token = tokens.getAndSet(i, 0);
+            if (token == TOKEN_PLACED) ui.placeToken(i / config.tableSize, i % config.tableSize);
+            else if (token == TOKEN_REMOVED) ui.removeToken(i / config.tableSize, i % config.tableSize);
+        }
+
+        long time = countdown.getAndSet(NO_TIME_CHANGE);
+        if (time != NO_TIME_CHANGE) ui.setCountdown(time >> 1, (time & 1) != 0);
+        time = elapsed.getAndSet(NO_TIME_CHANGE);
+        if (time != NO_TIME_CHANGE) ui.setElapsed(time);
+
+        for (int player = 0; player < freezes.length(); player++) {
+            long freeze = freezes.getAndSet(player, NO_TIME_CHANGE);
+            if (freeze != NO_TIME_CHANGE) ui.setFreeze(player, freeze);
+            int score = scores.getAndSet(player, NO_CHANGE);
+            if (score != NO_CHANGE) ui.setScore(player, score);
+        }
+
+        int[] players = winners.getAndSet(null);
+        if (players != null) ui.announceWinner(players);
+    }
+
+    private void changed() {
+        dirty.set(true);
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        cards.set(slot, card);
+        changed();
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        cards.set(slot, NO_CARD);
+        changed();
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        tokens.set(player * config.tableSize + slot, TOKEN_PLACED);
+        changed();
+    }
+
+    @Override
+    public void removeTokens() {
+        for (int slot = 0; slot < config.tableSize; slot++)
+            removeTokens(slot);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        for (int player = 0; player < config.players; player++)
+            tokens.set(player * config.tableSize + slot, TOKEN_REMOVED);
+        changed();
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        tokens.set(player * config.tableSize + slot, TOKEN_REMOVED);
+        changed();
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        countdown.set(millies << 1 | (warn ? 1 : 0));
+        changed();
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        elapsed.set(millies);
+        changed();
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        freezes.set(player, millies);
+        changed();
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        scores.set(player, score);
+        changed();
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        winners.set(players);
+        changed();
+    }
+
+    @Override
+    public void dispose() {
+        frameTimer.stop();
+        SwingUtilities.invokeLater(() -> {
+            applyChanges();
+            ui.dispose();
+        });
+    }
+}
@@ -0,0 +1,120 @@
+package bguspl.set;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A user interface that sends the events of a table to the network clients watching it (see NetworkServer). The
+ * events are buffered as binary records and taken as a single frame every tick, so a client receives one frame per
+ * tick no matter how many events there were. Countdown and elapsed time updates within a tick are merged into one.
+ * <p>
+ * Every record is a byte with the event type (GameEventLog.Type ordinal) and two ints, with the same meaning as in
+ * the event log (players are numbered from 1).
+ */
+public class UserInterfaceBroadcast implements UserInterface {
+
+    /**
+     * The size of an event record.
+     */
+    static final int EVENT_BYTES = 1 + 2 * Integer.BYTES;
+
+    private ByteBuffer pending = ByteBuffer.allocate(64 * EVENT_BYTES);
+    private int count;
+
+    /**
+     * The position of the timer update in pending (-1 if there is none in this tick).
+     */
+    private int timer = -1;
+
+    private synchronized void add(GameEventLog.Type type, long a, long b) {
+        boolean isTimer = type == GameEventLog.Type.COUNTDOWN || type == GameEventLog.Type.ELAPSED;
+        if (isTimer && timer >= 0) {
+            pending.put(timer, (byte) type.ordinal()).putInt(timer + 1, (int) a).putInt(timer + 1 + Integer.BYTES, (int) b);
+            return;
+        }
+        if (pending.remaining() < EVENT_BYTES) {
+            ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            pending = larger.put(pending);
+        }
+        if (isTimer)
+            timer = pending.position();
+        pending.put((byte) type.ordinal()).putInt((int) a).putInt((int) b);
+        count++;
+    }
+
+    /**
+     * @return - an EVENTS frame with the events since the last call (ready to be written), or null if there are none.
+     */
+    synchronized ByteBuffer takeFrame() {
+        if (count == 0)
+            return null;
+        pending.flip();
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + 1 + Integer.BYTES + pending.remaining());
+        frame.putInt(frame.capacity() - Integer.BYTES).put(NetworkServer.EVENTS).putInt(count).put(pending).flip();
+        pending.clear();
+        count = 0;
+        timer = -1;
+        return frame;
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        add(GameEventLog.Type.PLACE_CARD, slot, card);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        add(GameEventLog.Type.REMOVE_CARD, slot, 0);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        add(GameEventLog.Type.PLACE_TOKEN, player + 1, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        add(GameEventLog.Type.REMOVE_ALL_TOKENS, 0, 0);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        add(GameEventLog.Type.REMOVE_TOKENS, slot, 0);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        add(GameEventLog.Type.REMOVE_TOKEN, player + 1, slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        add(GameEventLog.Type.COUNTDOWN, warn ? 1 : 0, millies);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        add(GameEventLog.Type.ELAPSED, 0, millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        add(GameEventLog.Type.FREEZE, player + 1, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        add(GameEventLog.Type.SCORE, player + 1, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        for (int id : players)
+            add(GameEventLog.Type.WINNER, id + 1, 0);
+    }
+
+    @Override
+    public void dispose() {
+        add(GameEventLog.Type.DISPOSE, 0, 0);
+    }
+}
@@ -2,6 +2,7 @@ package bguspl.set;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -11,94 +12,149 @@ public class UserInterfaceDecorator implements UserInterface {
     private final Util util;
     private final UserInterface ui;
 
+    /**
+     * The binary event log to record the events to (null to log them as text).
+     */
+    private final GameEventLog events;
+
     public UserInterfaceDecorator(Logger logger, Util util, UserInterface ui) {
+        this(logger, util, ui, null);
+    }
+
+    public UserInterfaceDecorator(Logger logger, Util util, UserInterface ui, GameEventLog events) {
         this.ui = ui;
         this.logger = logger;
         this.util = util;
+        this.events = events;
 
         if (ui == null) System.out.println("running without a user interface. Check logs.");
     }
 
     @Override
     public void placeCard(int card, int slot) {
-        logger.severe("placing card " + card + " in slot " + slot);
+        if (logging()) {
+            if (events != null) events.record(GameEventLog.Type.PLACE_CARD, slot, card);
+            else logger.severe("placing card " + card + " in slot " + slot);
+        }
         util.spin();
         if (ui != null) ui.placeCard(card, slot);
     }
 
     @Override
     public void removeCard(int slot) {
-        logger.severe("removing card from slot " + slot);
+        if (logging()) {
+            if (events != null) events.record(GameEventLog.Type.REMOVE_CARD, slot, 0);
+            else logger.severe("removing card from slot " + slot);
+        }
         util.spin();
         if (ui != null) ui.removeCard(slot);
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        logger.severe("player " + (player + 1) + " placing token on slot " + slot);
+        if (logging()) {
+            if (events != null) events.record(GameEventLog.Type.PLACE_TOKEN, player + 1, slot);
+            else logger.severe("player " + (player + 1) + " placing token on slot " + slot);
+        }
         util.spin();
         if (ui != null) ui.placeToken(player, slot);
     }
 
     @Override
     public void removeTokens() {
-        logger.severe("removing all tokens");
+        if (logging()) {
+            if (events != null) events.record(GameEventLog.Type.REMOVE_ALL_TOKENS, 0, 0);
+            else logger.severe("removing all tokens");
+        }
         util.spin();
         if (ui != null) ui.removeTokens();
     }
 
     @Override
     public void removeTokens(int slot) {
-        logger.severe("removing tokens from slot " + slot);
+        if (logging()) {
+            if (events != null) events.record(GameEventLog.Type.REMOVE_TOKENS, slot, 0);
+            else logger.severe("removing tokens from slot " + slot);
+        }
         util.spin();
         if (ui != null) ui.removeTokens(slot);
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        logger.severe("removing player " + (player + 1) + " token from slot " + slot);
+        if (logging()) {
+            if (events != null) events.record(GameEventLog.Type.REMOVE_TOKEN, player + 1, slot);
+            else logger.severe("removing player " + (player + 1) + " token from slot " + slot);
+        }
         util.spin();
         if (ui != null) ui.removeToken(player, slot);
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
-        if (!warn || millies % 1000L == 0L)
-            logger.severe("updating countdown to " + millies);
+        if ((!warn || millies % 1000L == 0L) && logging()) {
+            if (events != null) events.record(GameEventLog.Type.COUNTDOWN, warn ? 1 : 0, millies);
+            else logger.severe("updating countdown to " + millies);
+        }
         if (ui != null) ui.setCountdown(millies, warn);
     }
 
     @Override
     public void setElapsed(long millies) {
-        logger.severe("updating elapsed time to " + millies);
+        if (logging()) {
+            if (events != null) events.record(GameEventLog.Type.ELAPSED, 0, millies);
+            else logger.severe("updating elapsed time to " + millies);
+        }
         util.spin();
         if (ui != null) ui.setElapsed(millies);
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        logger.severe("setting player " + (player + 1) + " freeze to " + millies);
+        if (logging()) {
+            if (events != null) events.record(GameEventLog.Type.FREEZE, player + 1, millies);
+            else logger.severe("setting player " + (player + 1) + " freeze to " + millies);
+        }
         util.spin();
         if (ui != null) ui.setFreeze(player, millies);
     }
 
     @Override
     public void setScore(int player, int score) {
-        logger.severe("setting player " + (player + 1) + " score to " + score);
+        if (logging()) {
+            if (events != null) events.record(GameEventLog.Type.SCORE, player + 1, score);
+            else logger.severe("setting player " + (player + 1) + " score to " + score);
+        }
         util.spin();
         if (ui != null) ui.setScore(player, score);
     }
 
     @Override
     public void announceWinner(int[] players) {
-        List<String> winners = Arrays.stream(players).mapToObj(id -> "player " + (id + 1)).collect(Collectors.toList());
-        logger.severe("announcing winner(s): " + String.join(", ", winners));
+        if (logging()) {
+            if (events != null) {
+                for (int id : players) events.record(GameEventLog.Type.WINNER, id + 1, 0);
+            } else {
+                List<String> winners = Arrays.stream(players).mapToObj(id -> "player " + (id + 1)).collect(Collectors.toList());
+                logger.severe("announcing winner(s): " + String.join(", ", winners));
+            }
+        }
         if (ui != null) ui.announceWinner(players);
     }
 
     @Override
     public void dispose() {
-        logger.severe("disposing of user interface elements");
+        if (logging()) {
+            if (events != null) events.record(GameEventLog.Type.DISPOSE, 0, 0);
+            else logger.severe("disposing of user interface elements");
+        }
         if (ui != null) ui.dispose();
     }
+
+    /**
+     * The events are logged at level SEVERE: checked before building any message.
+     */
+    private boolean logging() {
+        return logger.isLoggable(Level.SEVERE);
+    }
 }
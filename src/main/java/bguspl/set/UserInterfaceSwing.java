@@ -28,7 +28,11 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
     }
 
-    public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
+    /**
+     * @param players - the players to dispatch the key presses to (may be filled after the user interface is created).
+     * @param onClose - called when the window is closed with the X button.
+     */
+    public UserInterfaceSwing(Logger logger, Config config, Player[] players, Runnable onClose) {
 
         this.config = config;
         timerPanel = new TimerPanel();
@@ -64,7 +68,7 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
         addKeyListener(new InputManager(logger, config, players));
-        addWindowListener(new WindowManager());
+        addWindowListener(new WindowManager(onClose));
 
         EventQueue.invokeLater(() -> setVisible(true));
     }
@@ -152,7 +156,6 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             int row = slot / config.columns;
             int column = slot % config.columns;
             grid[row][column] = deck[card];
-            validate();
             repaint();
         }
 
@@ -160,7 +163,6 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             int row = slot / config.columns;
             int column = slot % config.columns;
             grid[row][column] = emptyCard;
-            validate();
             repaint();
         }
 
@@ -1,6 +1,8 @@
 package bguspl.set;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * An interface for general utilities provided for convenience.
@@ -41,6 +43,37 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Finds up to count sets in the given collection of cards using all the processors (for large decks), and passes
+     * each set to an action as soon as it is found. The search stops once count sets were found.
+     *
+     * @param deck   - a collection of cards (may not include null objects).
+     * @param count  - the maximum number of sets to find.
+     * @param action - the action to perform on every set found (called concurrently from several threads).
+     * @return - the number of sets passed to the action.
+     */
+    int findSetsParallel(List<Integer> deck, int count, Consumer<int[]> action);
+
+    /**
+     * Lazily streams the sets in the given cards: nothing is searched until the stream is consumed, and short-circuit
+     * operations (anyMatch, findAny, limit) stop the search. The stream may be made parallel.
+     *
+     * @param deck  - an array of distinct card ids (not modified).
+     * @param reuse - if true, the cards of every set are written to the same array, which is only valid until the
+     *                next set is found (so clone any set that is kept). Otherwise every set is a new array.
+     * @return - a stream of arrays with the card ids (sorted) of every legal set.
+     */
+    Stream<int[]> streamSets(int[] deck, boolean reuse);
+
+    /**
+     * Finds the card that completes two cards to a legal set (sets of 3 cards, i.e. config.featureSize == 3 only).
+     *
+     * @param first  - a card id.
+     * @param second - another card id.
+     * @return - the id of the only card that forms a legal set with the two given cards.
+     */
+    int completeSet(int first, int second);
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
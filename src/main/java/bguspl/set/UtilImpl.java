@@ -1,10 +1,17 @@
 package bguspl.set;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The implementation of the UserInterface interface.
@@ -13,8 +20,94 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The largest deck for which the third card of every pair is precomputed (729^2 ints, about 2MB).
+     */
+    private static final int MAX_PRECOMPUTED_DECK_SIZE = 729;
+
+    /**
+     * For featureSize == 3: thirdCard[a * deckSize + b] is the card that completes cards a and b to a legal set.
+     * Null if featureSize != 3 or the deck is too large, in which case the third card is computed on demand.
+     */
+    private final int[] thirdCard;
+
+    /**
+     * Every card packed into a long: feature i occupies bits [i * featureSize, (i + 1) * featureSize) and holds the
+     * value v as the single bit 1 << v. Null if the features do not fit in 64 bits.
+     */
+    private final long[] packedCards;
+
+    /**
+     * The bits of every feature lane except its highest one (i.e. the bits that have a neighbour in the same lane).
+     */
+    private final long laneInnerBits;
+
+    /**
+     * Decks smaller than this are searched on the calling thread even in parallel mode.
+     */
+    private static final int PARALLEL_THRESHOLD = 128;
+
+    /**
+     * Ranges of fewer first cards than this are not split between threads.
+     */
+    private static final int MIN_SPLIT = 4;
+
     public UtilImpl(Config config) {
         this.config = config;
+        this.thirdCard = config.featureSize == 3 && config.deckSize <= MAX_PRECOMPUTED_DECK_SIZE ? precomputeThirdCards() : null;
+
+        boolean packs = config.featureSize >= 2 && config.featureSize * config.featureCount <= Long.SIZE;
+        this.packedCards = packs ? packCards() : null;
+        long inner = 0;
+        if (packs)
+            for (int i = 0; i < config.featureCount; ++i)
+                inner |= ((1L << (config.featureSize - 1)) - 1) << (i * config.featureSize);
+        this.laneInnerBits = inner;
+    }
+
+    private long[] packCards() {
+        long[] packed = new long[config.deckSize];
+        int[] features = new int[config.featureCount];
+        for (int card = 0; card < config.deckSize; ++card) {
+            cardToFeatures(card, features);
+            for (int i = 0; i < config.featureCount; ++i)
+                packed[card] |= 1L << (i * config.featureSize + features[i]);
+        }
+        return packed;
+    }
+
+    private int[] precomputeThirdCards() {
+        int n = config.deckSize;
+        int[] third = new int[n * n];
+        for (int a = 0; a < n; ++a)
+            for (int b = 0; b < n; ++b)
+                third[a * n + b] = computeThirdCard(a, b);
+        return third;
+    }
+
+    /**
+     * Computes the card that completes two cards to a legal set (featureSize == 3 only): for every feature, if the
+     * two cards agree the third card has the same value, otherwise it has the remaining value.
+     */
+    private int computeThirdCard(int first, int second) {
+        int third = 0;
+        for (int i = 0, weight = 1; i < config.featureCount; ++i, weight *= 3) {
+            third += ((6 - first % 3 - second % 3) % 3) * weight;
+            first /= 3;
+            second /= 3;
+        }
+        return third;
+    }
+
+    @Override
+    public int completeSet(int first, int second) {
+        if (config.featureSize != 3)
+            throw new UnsupportedOperationException("completeSet requires featureSize 3, not " + config.featureSize);
+        return thirdCard(first, second);
+    }
+
+    private int thirdCard(int first, int second) {
+        return thirdCard != null ? thirdCard[first * config.deckSize + second] : computeThirdCard(first, second);
     }
 
     private void cardToFeatures(int card, int[] features) {
@@ -38,27 +131,43 @@ public class UtilImpl implements Util {
         return features;
     }
 
+    /**
+     * A set of featureSize cards is legal iff in every feature lane either all cards share the same bit, or every bit
+     * of the lane is used by exactly one card. So OR-ing and AND-ing the packed cards and XOR-ing the results leaves
+     * each lane either all zeros or all ones in a legal set, which is checked by comparing every bit to its neighbour.
+     */
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
-        for (int i = 0; i < config.featureCount; ++i) {
-            boolean sameSame = true, butDifferent = true;
-
-            // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
-                    sameSame = false;
-                    break;
-                }
+        if (packedCards == null || cards.length != config.featureSize) return testSetByFeatures(cards);
 
-            // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
-                        butDifferent = false;
-                        break;
-                    }
+        long any = 0, all = -1L;
+        for (int card : cards) {
+            any |= packedCards[card];
+            all &= packedCards[card];
+        }
+        long mixed = any ^ all;
+        return ((mixed ^ (mixed >>> 1)) & laneInnerBits) == 0;
+    }
 
+    /**
+     * Checks any number of cards in O(cards) per feature: a feature is sameSame iff the cards have at most one distinct
+     * value in it, and butDifferent iff they have as many distinct values as cards. The distinct values are counted
+     * with a bitmask of the values seen.
+     */
+    private boolean testSetByFeatures(int[] cards) {
+        long[] seen = new long[(config.featureSize + Long.SIZE - 1) / Long.SIZE];
+        for (int i = 0, weight = 1; i < config.featureCount; ++i, weight *= config.featureSize) {
+            Arrays.fill(seen, 0);
+            int distinct = 0;
+            for (int card : cards) {
+                int value = card / weight % config.featureSize;
+                long bit = 1L << value;
+                if ((seen[value >>> 6] & bit) == 0) {
+                    seen[value >>> 6] |= bit;
+                    ++distinct;
+                }
+            }
+            boolean sameSame = distinct <= 1, butDifferent = distinct == cards.length;
             if (sameSame == butDifferent) return false;
         }
         return true;
@@ -66,28 +175,408 @@ public class UtilImpl implements Util {
 
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
-        LinkedList<int[]> sets = new LinkedList<>();
-        int n = deck.size();
-        int r = config.featureSize;
-        int[] combination = new int[r];
+        List<int[]> sets = new ArrayList<>();
+        Search.Cursor cursor = new Search(toArray(deck)).cursor(0, deck.size());
+        for (int[] set = new int[config.featureSize]; sets.size() < count && cursor.next(set); set = new int[config.featureSize])
+            sets.add(set);
+        return sets;
+    }
 
-        for (int i = 0; i < r; ++i)
-            combination[i] = i;
+    @Override
+    public int findSetsParallel(List<Integer> deck, int count, Consumer<int[]> action) {
+        if (count <= 0) return 0;
+        AtomicInteger found = new AtomicInteger();
+        SetSink sink = new SetSink() {
+            @Override
+            public boolean accept(int[] set) {
+                int number = found.incrementAndGet();
+                if (number > count) return false;
+                action.accept(set);
+                return number < count;
+            }
 
-        while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
-            if (testSet(cards)) {
-                sets.add(cards);
-                if (sets.size() >= count) return sets;
+            @Override
+            public boolean cancelled() {
+                return found.get() >= count;
             }
+        };
+
+        Search search = new Search(toArray(deck));
+        if (deck.size() < PARALLEL_THRESHOLD)
+            search.run(0, deck.size(), sink);
+        else
+            ForkJoinPool.commonPool().invoke(new SearchTask(search, 0, deck.size(), sink));
+        return Math.min(found.get(), count);
+    }
 
-            // generate next combination in lexicographic order
-            int t = r - 1;
-            while (t != 0 && combination[t] == n - r + t) --t;
-            combination[t]++;
-            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+    @Override
+    public Stream<int[]> streamSets(int[] deck, boolean reuse) {
+        return StreamSupport.stream(() -> {
+            Search search = new Search(deck.clone());
+            return new SetSpliterator(search, search.cursor(0, deck.length), reuse);
+        }, Spliterator.NONNULL, false);
+    }
+
+    private static int[] toArray(List<Integer> deck) {
+        int[] cards = new int[deck.size()];
+        for (int i = 0; i < cards.length; ++i)
+            cards[i] = deck.get(i);
+        return cards;
+    }
+
+    /**
+     * Receives the sets found by a search.
+     */
+    private interface SetSink {
+
+        /**
+         * @param set - the cards of a set (sorted).
+         * @return - false to stop the search.
+         */
+        boolean accept(int[] set);
+
+        /**
+         * @return - true iff the search should stop (checked between sets).
+         */
+        default boolean cancelled() {
+            return false;
         }
-        return sets;
+    }
+
+    /**
+     * Searches a range of first cards in parallel: the range is split in halves until it is small enough, and every
+     * set of the deck is found by the task that owns its smallest card.
+     */
+    private static class SearchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Search search;
+        private final int from;
+        private final int to;
+        private final SetSink sink;
+
+        SearchTask(Search search, int from, int to, SetSink sink) {
+            this.search = search;
+            this.from = from;
+            this.to = to;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute() {
+            if (sink.cancelled()) return;
+            if (to - from <= MIN_SPLIT) {
+                search.run(from, to, sink);
+                return;
+            }
+            // the smaller first cards have more sets after them, so the split point leans towards them
+            int middle = from + (to - from) / 3;
+            invokeAll(new SearchTask(search, from, middle, sink), new SearchTask(search, middle, to, sink));
+        }
+    }
+
+    /**
+     * Streams the sets of a search one at a time. Splitting hands over the first cards that were not searched yet, so
+     * a parallel stream divides the deck the same way SearchTask does. When reusing, every spliterator writes all of
+     * its sets into one array of its own.
+     */
+    private class SetSpliterator implements Spliterator<int[]> {
+
+        private final Search search;
+        private final Search.Cursor cursor;
+        private final boolean reuse;
+        private final int[] buffer;
+
+        SetSpliterator(Search search, Search.Cursor cursor, boolean reuse) {
+            this.search = search;
+            this.cursor = cursor;
+            this.reuse = reuse;
+            this.buffer = reuse ? new int[config.featureSize] : null;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super int[]> action) {
+            int[] set = reuse ? buffer : new int[config.featureSize];
+            if (!cursor.next(set)) return false;
+            action.accept(set);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super int[]> action) {
+            int[] set = reuse ? buffer : new int[config.featureSize];
+            while (cursor.next(set)) {
+                action.accept(set);
+                if (!reuse) set = new int[config.featureSize];
+            }
+        }
+
+        @Override
+        public Spliterator<int[]> trySplit() {
+            int from = cursor.first() + 1, to = cursor.to;
+            if (search.n < PARALLEL_THRESHOLD || to - from < 2 * MIN_SPLIT) return null;
+            int middle = from + (to - from) / 3;
+            Spliterator<int[]> suffix = new SetSpliterator(search, search.cursor(middle, to), reuse);
+            cursor.to = middle;
+            return suffix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return NONNULL;
+        }
+    }
+
+    /**
+     * A search for the sets of a deck. The deck is sorted and indexed once, and then any range of first (smallest)
+     * cards can be searched with a cursor, by any number of threads at once.
+     */
+    private class Search {
+
+        private final int n;
+        private final int[] cards;
+        private final long[] present;
+
+        /**
+         * For featureSize 3 to 64: features[c * featureCount + f] is the value of feature f of cards[c].
+         */
+        private final int[] features;
+
+        /**
+         * @param deck - the cards to search (sorted in place).
+         */
+        Search(int[] deck) {
+            n = deck.length;
+            cards = deck;
+            Arrays.sort(cards);
+            present = new long[n == 0 ? 0 : (cards[n - 1] >>> 6) + 1];
+            for (int card : cards)
+                present[card >>> 6] |= 1L << card;
+
+            boolean byLastCard = config.featureSize > 3 && config.featureSize <= Long.SIZE;
+            features = byLastCard ? new int[n * config.featureCount] : null;
+            if (byLastCard)
+                for (int c = 0; c < n; ++c)
+                    for (int f = 0, card = cards[c]; f < config.featureCount; ++f, card /= config.featureSize)
+                        features[c * config.featureCount + f] = card % config.featureSize;
+        }
+
+        /**
+         * @return - a cursor over the sets whose smallest card is cards[from..to).
+         */
+        Cursor cursor(int from, int to) {
+            if (config.featureSize == 3) return new ThirdCardCursor(from, to);
+            if (features != null) return new LastCardCursor(from, to);
+            return new CombinationCursor(from, to);
+        }
+
+        /**
+         * Passes the sets whose smallest card is cards[from..to) to the sink, until it asks to stop.
+         */
+        void run(int from, int to, SetSink sink) {
+            Cursor cursor = cursor(from, to);
+            int[] set = new int[config.featureSize];
+            while (!sink.cancelled() && cursor.next(set)) {
+                if (!sink.accept(set)) return;
+                set = new int[config.featureSize];
+            }
+        }
+
+        /**
+         * A resumable search of a range of first cards: every call to next continues where the previous one stopped.
+         */
+        abstract class Cursor {
+
+            /**
+             * The end (exclusive) of the range of first cards. May only be lowered to an index above first().
+             */
+            int to;
+
+            Cursor(int to) {
+                this.to = to;
+            }
+
+            /**
+             * @return - the index of the first card searched now (below the range before the search starts). The
+             *           sets whose first card has a larger index were not found yet.
+             */
+            abstract int first();
+
+            /**
+             * Finds the next set and writes its cards (sorted) to the given array.
+             *
+             * @return - false iff there are no sets left in the range.
+             */
+            abstract boolean next(int[] set);
+        }
+
+        /**
+         * Finds sets in O(n^2) for featureSize == 3: every pair of cards determines the only card that completes it
+         * to a set, so it is enough to look that card up in a presence bitmap of the deck.
+         */
+        private class ThirdCardCursor extends Cursor {
+
+            // the pair of cards checked last (j == i before checking the pairs of cards[i])
+            private int i;
+            private int j;
+
+            ThirdCardCursor(int from, int to) {
+                super(to);
+                i = j = from;
+            }
+
+            @Override
+            int first() {
+                return j == i ? i - 1 : i;
+            }
+
+            @Override
+            boolean next(int[] set) {
+                // each set is reported once, from its two smallest cards (so the cards of every set are sorted)
+                for (; i < Math.min(to, n - 2); j = ++i)
+                    while (++j < n - 1) {
+                        int third = thirdCard(cards[i], cards[j]);
+                        if (third > cards[j] && isPresent(third)) {
+                            set[0] = cards[i];
+                            set[1] = cards[j];
+                            set[2] = third;
+                            return true;
+                        }
+                    }
+                return false;
+            }
+        }
+
+        /**
+         * Finds sets for any featureSize k from 4 to 64: the cards of a set are chosen in increasing order, and a
+         * partial choice is dropped as soon as one of its features is neither all the same nor all different (so most
+         * of the combinations are never visited). The first k - 1 cards determine the only card that completes them,
+         * which is looked up in the presence bitmap of the deck.
+         */
+        private class LastCardCursor extends Cursor {
+
+            // seen[j * featureCount + f] is the mask of the values of feature f among the first j + 1 chosen cards
+            private final long[] seen = new long[config.featureSize * config.featureCount];
+            private final int[] chosen = new int[config.featureSize];
+            private int depth;
+
+            LastCardCursor(int from, int to) {
+                super(to);
+                chosen[0] = from - 1;
+            }
+
+            @Override
+            int first() {
+                return chosen[0];
+            }
+
+            @Override
+            boolean next(int[] set) {
+                int k = config.featureSize;
+                while (depth >= 0) {
+                    int c = ++chosen[depth];
+                    if (c > n - (k - depth) || depth == 0 && c >= to) { // not enough cards left, or out of the range
+                        --depth;
+                        continue;
+                    }
+                    if (!extend(seen, depth, c)) continue;
+
+                    if (depth < k - 2) {
+                        chosen[++depth] = c;
+                        continue;
+                    }
+
+                    int last = lastCard(seen, k - 1);
+                    if (last > cards[c] && isPresent(last)) {
+                        for (int j = 0; j < k - 1; ++j)
+                            set[j] = cards[chosen[j]];
+                        set[k - 1] = last;
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+
+        /**
+         * Adds the card of index c as the chosen card number depth (from 0), updating the masks of the values seen.
+         *
+         * @return - false iff some feature is no longer all the same or all different.
+         */
+        private boolean extend(long[] seen, int depth, int c) {
+            int fc = config.featureCount;
+            for (int f = 0; f < fc; ++f) {
+                long mask = (depth == 0 ? 0 : seen[(depth - 1) * fc + f]) | 1L << features[c * fc + f];
+                int distinct = Long.bitCount(mask);
+                if (distinct != 1 && distinct != depth + 1) return false;
+                seen[depth * fc + f] = mask;
+            }
+            return true;
+        }
+
+        /**
+         * Checks every combination of featureSize cards (for the feature sizes the other searches do not support).
+         */
+        private class CombinationCursor extends Cursor {
+
+            // the next combination to check
+            private final int[] combination = new int[config.featureSize];
+
+            CombinationCursor(int from, int to) {
+                super(to);
+                for (int i = 0; i < combination.length; ++i)
+                    combination[i] = from + i;
+            }
+
+            @Override
+            int first() {
+                return combination[0];
+            }
+
+            @Override
+            boolean next(int[] set) {
+                int r = combination.length;
+                while (combination[r - 1] < n && combination[0] < to) {
+                    for (int i = 0; i < r; ++i)
+                        set[i] = cards[combination[i]];
+
+                    // generate next combination in lexicographic order
+                    int t = r - 1;
+                    while (t != 0 && combination[t] == n - r + t) --t;
+                    combination[t]++;
+                    for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+
+                    if (testSet(set)) return true;
+                }
+                return false;
+            }
+        }
+
+        private boolean isPresent(int card) {
+            return card >>> 6 < present.length && (present[card >>> 6] & (1L << card)) != 0;
+        }
+    }
+
+    /**
+     * @return - the card that completes the chosen cards to a set: in every feature, the shared value if all the
+     *           chosen cards agree, otherwise the only value none of them has.
+     */
+    private int lastCard(long[] seen, int chosen) {
+        int fc = config.featureCount;
+        long all = config.featureSize == Long.SIZE ? -1L : (1L << config.featureSize) - 1;
+        int card = 0;
+        for (int f = fc - 1; f >= 0; --f) {
+            long mask = seen[(chosen - 1) * fc + f];
+            long value = Long.bitCount(mask) == 1 && chosen > 1 ? mask : all & ~mask;
+            card = card * config.featureSize + Long.numberOfTrailingZeros(value);
+        }
+        return card;
     }
 
     public void spin() {
@@ -1,16 +1,17 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.Metrics;
+import bguspl.set.Threads;
 import bguspl.set.UserInterface;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * This class manages the dealer's threads and data
@@ -29,9 +30,44 @@ public class Dealer implements Runnable {
     private final Player[] players;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The card ids that are left in the dealer's deck.
      */
-    private final List<Integer> deck;
+    private final Deck deck;
+
+    /**
+     * Tracks whether the cards in play and the cards on the table still contain a legal set.
+     */
+    private final SetTracker sets;
+
+    /**
+     * The seed of the random number generator that shuffles the deck (the same seed deals the same cards).
+     */
+    final long seed;
+    private final Random random;
+
+    /**
+     * The journal to record the game to (null if the game is not recorded).
+     */
+    final GameJournal journal;
+
+    /**
+     * The replay that decides when the dealer verifies claims and reshuffles (null in a live game).
+     */
+    private final GameReplay replay;
+
+    /**
+     * The number of batches of claims verified so far.
+     */
+    private int batch;
+
+    /**
+     * The time the dealer spends on each wake-up (excluding the wait itself), in nanoseconds, and the verdicts.
+     */
+    private final Metrics.Histogram iterationNanos;
+    private final Metrics.Counter legalClaims;
+    private final Metrics.Counter illegalClaims;
+    private final Metrics.Counter releasedClaims;
+    private final Metrics.Counter reshuffles;
 
     /**
      * True iff game should be terminated.
@@ -40,21 +76,86 @@ public class Dealer implements Runnable {
     private ArrayList<Integer> tokensToRemove;
     protected volatile ArrayBlockingQueue<Integer> waitingForCheck;
     long lastReset;
-    private Integer claimerId;
+
+    /**
+     * The ids of the players whose claims are verified in the current batch (in arrival order).
+     */
+    private final List<Integer> claims;
+
+    /**
+     * The slots of the legal sets found so far in the current batch of claims.
+     */
+    private final boolean[] claimedSlots;
+
+    /**
+     * The players whose tokens were removed with the last card removed (see Table.removeCard).
+     */
+    private final int[] affectedPlayers;
+
     /**
      * The time when the dealer needs to reshuffle the deck due to turn timeout.
      */
     private long reshuffleTime = Long.MAX_VALUE;
 
+    /**
+     * True iff the table was redealt right away for having no legal set, and no deal has had a legal set since.
+     * A dead table is only redealt right away once: after that it is kept until the turn times out, or else feature
+     * sizes where most deals are dead would redeal in a busy loop.
+     */
+    private boolean redealtDeadTable;
+
+    /**
+     * The time when the countdown (or elapsed time) display needs to be updated next (Long.MAX_VALUE if never).
+     */
+    private long nextDisplayUpdate = Long.MAX_VALUE;
+
+    /**
+     * The thread running the dealer (woken up when the game is terminated from another thread).
+     */
+    private volatile Thread dealerThread;
+
+    /**
+     * The ids of the players with the highest score (set when the game ends).
+     */
+    private volatile int[] winners = new int[0];
+
     public Dealer(Env env, Table table, Player[] players) {
+        this(env, table, players, newSeed(env.config.randomSeed), null, null);
+    }
+
+    public Dealer(Env env, Table table, Player[] players, long seed, GameJournal journal) {
+        this(env, table, players, seed, journal, null);
+    }
+
+    Dealer(Env env, Table table, Player[] players, GameReplay replay) {
+        this(env, table, players, replay.seed(), null, replay);
+    }
+
+    private Dealer(Env env, Table table, Player[] players, long seed, GameJournal journal, GameReplay replay) {
         this.env = env;
         this.table = table;
         this.players = players;
-        this.deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        this.seed = seed;
+        this.random = new Random(seed);
+        this.journal = journal;
+        this.replay = replay;
+        this.deck = new Deck(env.config.deckSize, random);
+        this.sets = new SetTracker(env);
+        for (int i = 0; i < deck.size(); ++i)
+            sets.addedToDeck(deck.cardAt(i));
         this.reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
         this.tokensToRemove = new ArrayList<Integer>(env.config.featureSize);
-        this.waitingForCheck = new ArrayBlockingQueue<>(players.length);
+        this.waitingForCheck = replay != null ? replay.claimQueue(players.length) : new ArrayBlockingQueue<>(players.length);
+        this.claims = new ArrayList<>(players.length);
+        this.claimedSlots = new boolean[env.config.tableSize];
+        this.affectedPlayers = new int[players.length];
         lastReset = System.currentTimeMillis();
+        this.iterationNanos = env.metrics.histogram("dealer.iterationNanos");
+        this.legalClaims = env.metrics.counter("dealer.legalClaims");
+        this.illegalClaims = env.metrics.counter("dealer.illegalClaims");
+        this.releasedClaims = env.metrics.counter("dealer.releasedClaims");
+        this.reshuffles = env.metrics.counter("dealer.reshuffles");
+        env.metrics.gauge("dealer.waitingForCheck", waitingForCheck::size);
 
     }
 
@@ -63,43 +164,96 @@ public class Dealer implements Runnable {
      */
     @Override
     public void run() {
+        dealerThread = Thread.currentThread();
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
         for (Player p : players) {
-            new Thread(p, "Player" + p.id).start();
+            p.start(Threads.newThread(env.config, p, "Player" + p.id));
         }
         updateTimerDisplay(true);
         while (!shouldFinish()) {
             placeCardsOnTable();
+            if (sets.hasSetOnTable())
+                redealtDeadTable = false;
+            else if (redealtDeadTable && reshuffleTime == Long.MAX_VALUE && replay == null)
+                reshuffleTime = System.currentTimeMillis() + env.config.displayRefreshMillis; // no countdown to wait out
             timerLoop();
+            boolean timeout = sets.hasSetOnTable() || redealtDeadTable;
+            if (!timeout)
+                redealtDeadTable = true;
+            if (journal != null && !terminate)
+                journal.reshuffle(timeout);
             updateTimerDisplay(true);
             removeAllCardsFromTable();
+            reshuffles.increment();
         }
+        if (journal != null)
+            journal.end(terminate);
         terminate();
         announceWinners();
+        if (replay != null)
+            replay.finished();
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
     }
 
     /**
      * The inner loop of the dealer thread that runs as long as the countdown did
-     * not time out.
+     * not time out and there is a legal set on the table (or the table was already redealt for having none).
+     * The dealer only wakes up for the next event: a claim, a display update or the reshuffle deadline.
      */
     private void timerLoop() {
-        while (!terminate && System.currentTimeMillis() < reshuffleTime) {
-            updateTimerDisplay(false);
-            sleepUntilWokenOrTimeout();
-            updateTimerDisplay(false);
+        while (!terminate && System.currentTimeMillis() < reshuffleTime && (sets.hasSetOnTable() || redealtDeadTable)) {
+            if (replay != null)
+                replayStep();
+            else
+                sleepUntilWokenOrTimeout();
+            long woken = System.nanoTime();
+            if (System.currentTimeMillis() >= nextDisplayUpdate)
+                updateTimerDisplay(false);
             checkSets();
+            iterationNanos.record(System.nanoTime() - woken);
         }
     }
 
     /**
-     * Called when the game should be terminated.
+     * Waits for the replay to repeat the next recorded step: verify a batch of claims, let the countdown run out, or
+     * terminate the game.
+     */
+    private void replayStep() {
+        try {
+            int step = replay.awaitStep();
+            if (step == GameReplay.TIMEOUT)
+                reshuffleTime = 0;
+            else if (step == GameReplay.TERMINATE)
+                terminate();
+            else for (int i = 0; i < step; i++)
+                claims.add(waitingForCheck.take());
+        } catch (InterruptedException ignored) {
+            // terminated (checked by the timer loop)
+        }
+    }
+
+    /**
+     * @return - a seed for the deck shuffling: the configured one, or a random one if it is 0.
+     */
+    public static long newSeed(long configuredSeed) {
+        return configuredSeed != 0 ? configuredSeed : new Random().nextLong();
+    }
+
+    /**
+     * Called when the game should be terminated. From another thread, only wakes the dealer up (it may be waiting for
+     * a claim with no timeout): the dealer terminates the players itself when it stops.
      */
     public void terminate() {
+        terminate = true;
+        Thread thread = dealerThread;
+        if (thread != Thread.currentThread()) {
+            if (thread != null)
+                thread.interrupt();
+            return;
+        }
         for (int i = players.length-1; i >= 0; i--) {
             players[i].terminate();
         }
-        terminate = true;
     }
 
     /**
@@ -108,32 +262,35 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return (terminate || (env.util.findSets(deck, 1).size() == 0));
+        return terminate || !sets.hasSetInPlay();
     }
 
     /**
      * Checks cards should be removed from the table and removes them.
+     * The tokens of a slot are removed from the affected players only (O(affected players) per slot), but the pending
+     * key presses of the slot are cancelled for every player on purpose: a player with no token on the slot may have
+     * pressed its key, and the press must not land on the next card dealt there. This loop is O(players) per slot, at
+     * O(1) for a player with no pending presses (the scan of an empty input ring is empty).
      */
     private void removeCardsFromTable() {
         // if a player gets a set
 
-        synchronized (table) {
-            table.tableIsReady(false);
+        table.tableIsReady(false);
 
-            while (!tokensToRemove.isEmpty()) {
-                Integer slot = tokensToRemove.remove(0);
+        while (!tokensToRemove.isEmpty()) {
+            Integer slot = tokensToRemove.remove(0);
 
-                for (Player p : players) {
-                    p.getQueue().remove(slot);
-
-                    if (table.tokens[p.id][slot] == true)
-                        p.myTokens.remove(slot);
-                }
-
-                table.removeCard(slot);
-
-            }
+            if (table.cardAt(slot) != Table.EMPTY)
+                sets.removedFromTable(table.cardAt(slot), true);
+            // also removes the tokens, and no new token can be placed on the empty slot
+            int count = table.removeCard(slot, affectedPlayers);
 
+            // only the players that had a token on the slot hold it in their tokens (or in a claim waiting for the dealer)
+            for (int i = 0; i < count; i++)
+                players[affectedPlayers[i]].myTokens.remove(slot);
+            // but any player may have a pending key press for the slot, which must not land on the next card dealt there
+            for (Player p : players)
+                p.cancelKeyPresses(slot);
         }
     }
 
@@ -142,65 +299,71 @@ public class Dealer implements Runnable {
      */
     private void placeCardsOnTable() {
 
-        synchronized (table) {
-            Collections.shuffle(deck);
-            for (int i = 0; i < table.slotToCard.length & !deck.isEmpty(); i++) {
-                if (table.slotToCard[i] == null) {
-                    Integer card = deck.get(0);
-                    deck.remove(0);
-                    table.placeCard(card, i);
-                }
-
+        for (int i = 0; i < env.config.tableSize & !deck.isEmpty(); i++) {
+            if (table.cardAt(i) == Table.EMPTY) {
+                int card = deck.draw();
+                table.placeCard(card, i);
+                sets.placedOnTable(card);
             }
 
-            table.tableIsReady(true);
-
         }
+
+        table.tableIsReady(true);
+
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some
-     * purpose.
+     * Sleep until the next display update or reshuffle deadline, or until a claim arrives, then take all the claims
+     * waiting for the dealer.
      */
 
     private void sleepUntilWokenOrTimeout() {
 
         synchronized (this) {
             try {
-                if (System.currentTimeMillis() / 1000 == lastReset / 1000){
-                    claimerId = waitingForCheck.poll(Math.abs(900 - lastReset % 1000), TimeUnit.MILLISECONDS);
-                } else {
-                    claimerId = waitingForCheck.poll();
+                long nextEvent = Math.min(nextDisplayUpdate, reshuffleTime);
+                Integer claimerId = nextEvent == Long.MAX_VALUE ? waitingForCheck.take()
+                        : waitingForCheck.poll(nextEvent - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                if (claimerId != null) {
+                    claims.add(claimerId);
+                    waitingForCheck.drainTo(claims);
                 }
-            } catch (InterruptedException e) {
-                System.out.println("Thread was interrupted.");
+            } catch (InterruptedException ignored) {
+                // terminated (checked by the timer loop)
             }
         }
     }
 
     /**
-     * Reset and/or update the countdown and the countdown display.
+     * Reset and/or update the countdown and the countdown display, and schedule the next display update.
+     * The countdown is refreshed every config.displayRefreshMillis (aligned to its whole values), and every
+     * config.warningDisplayRefreshMillis once the warning period starts.
      */
     private void updateTimerDisplay(boolean reset) {
 
-        if (env.config.turnTimeoutMillis < 0)
-            return;
-        else if (env.config.turnTimeoutMillis == 0) {
-            long elapsedTime = System.currentTimeMillis() - lastReset;
+        long now = System.currentTimeMillis();
+        if (reset) {
+            lastReset = now;
+            // without a countdown the table is only reshuffled when it has no legal set
+            reshuffleTime = env.config.turnTimeoutMillis > 0 ? lastReset + env.config.turnTimeoutMillis : Long.MAX_VALUE;
+        }
+
+        if (env.config.turnTimeoutMillis < 0) {
+            nextDisplayUpdate = Long.MAX_VALUE;
+        } else if (env.config.turnTimeoutMillis == 0) {
+            long elapsedTime = now - lastReset;
             env.ui.setElapsed(elapsedTime);
+            nextDisplayUpdate = now + env.config.displayRefreshMillis - elapsedTime % env.config.displayRefreshMillis;
         } else {
-            if (!reset) {
-                // long elapsedTime = System.currentTimeMillis() - lastReset;
-                boolean warn = false;
-                if (reshuffleTime - System.currentTimeMillis() < env.config.turnTimeoutWarningMillis) {
-                    warn = true;
-                }
-                env.ui.setCountdown((reshuffleTime - System.currentTimeMillis()), warn);
-            } else {
-                lastReset = System.currentTimeMillis();
-                reshuffleTime = lastReset + env.config.turnTimeoutMillis;
-                env.ui.setCountdown(env.config.turnTimeoutMillis, false);
-            }
+            long remaining = Math.max(reshuffleTime - now, 0);
+            boolean warn = !reset && remaining < env.config.turnTimeoutWarningMillis;
+            env.ui.setCountdown(reset ? env.config.turnTimeoutMillis : remaining, warn);
+
+            long refresh = warn ? env.config.warningDisplayRefreshMillis : env.config.displayRefreshMillis;
+            long next = now + (remaining - 1) % refresh + 1; // when the remaining time reaches a multiple of refresh
+            if (!warn) // the warning starts once the remaining time drops below turnTimeoutWarningMillis
+                next = Math.min(next, reshuffleTime - env.config.turnTimeoutWarningMillis + 1);
+            nextDisplayUpdate = Math.min(next, reshuffleTime);
         }
     }
 
@@ -208,29 +371,34 @@ public class Dealer implements Runnable {
      * Returns all the cards from the table to the deck.
      */
     private void removeAllCardsFromTable() {
-        synchronized (table) {
-            table.tableIsReady(false);
-            for (int i = 0; i < env.config.tableSize && table.slotToCard[i] != null; i++) {
-                deck.add(table.slotToCard[i]);
-                table.removeCard(i);
-            }
-            //clean the players requests and wake them
-            tokensToRemove.clear();
-            for(Integer id: waitingForCheck){
-                try {
-                    players[id].awaitDealer.put(0);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+        table.tableIsReady(false);
+        int[] returned = new int[env.config.tableSize];
+        int count = 0;
+        for (int i = 0; i < env.config.tableSize; i++) {
+            if (table.cardAt(i) == Table.EMPTY) continue;
+            returned[count++] = table.cardAt(i);
+            sets.removedFromTable(table.cardAt(i), false);
+            table.removeCard(i);
+        }
+        deck.addAll(returned, count);
+        //clean the players requests and wake them (only the claims taken from the queue: a claim that arrives
+        //meanwhile stays queued and is released or verified later, instead of being dropped without a verdict)
+        tokensToRemove.clear();
+        List<Integer> released = new ArrayList<>(players.length);
+        waitingForCheck.drainTo(released);
+        for(Integer id: released){
+            try {
+                players[id].awaitDealer.put(0);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
             }
-            waitingForCheck.clear();
+        }
 
 
-            for (Player p : players) {
-                p.myTokens.clear();
-                p.checked = true;
-                p.state = 0;
-            }
+        for (Player p : players) {
+            p.myTokens.clear();
+            p.checked = true;
+            p.state = 0;
         }
     }
 
@@ -258,85 +426,87 @@ public class Dealer implements Runnable {
                 counter++;
             }
         }
+        this.winners = winners;
         env.ui.announceWinner(winners);
         
     }
 
+    /**
+     * @return - the ids of the winners, or an empty array if the game has not ended yet.
+     */
+    public int[] winners() {
+        return winners;
+    }
+
+    /**
+     * Verifies all the pending claims in arrival order against the same table state, collects every legal set whose
+     * slots were not taken by an earlier claim of the batch, and then releases all the claimers at once.
+     * A claim sharing a slot with an earlier legal claim, or missing tokens, is released without a verdict.
+     */
     public void checkSets() {
         synchronized (this) {
-            if (claimerId != null) {
-                Player claimer = players[claimerId];
-                ArrayList<Integer> firstSet = new ArrayList<Integer>(claimer.myTokens);
-
-                if(firstSet.size() < env.config.featureSize){  //check set'svalidility
-                    claimer.state =0;
-                    claimer.checked = true;
-                    try{
-                        claimer.awaitDealer.put(0);
-                    } catch(InterruptedException ignored){}
-                    return;
-                }
-                if (isSet(firstSet)) {  //if legal set
-                    tokensToRemove = firstSet;
-                    removeSetsContainSameValue(firstSet);
+            if (claims.isEmpty())
+                return;
+
+            Arrays.fill(claimedSlots, false);
+            for (Integer id : claims) {
+                Player claimer = players[id];
+                ArrayList<Integer> claim = new ArrayList<Integer>(claimer.myTokens);
+                if (claim.size() < env.config.featureSize || containsClaimedSlot(claim)) {
+                    claimer.state = 0;
+                    releasedClaims.increment();
+                } else if (isSet(claim)) {
+                    for (int slot : claim)
+                        claimedSlots[slot] = true;
+                    tokensToRemove.addAll(claim);
                     claimer.state = 1;
-                    removeCardsFromTable();
-                    placeCardsOnTable();
-                    updateTimerDisplay(true);
+                    legalClaims.increment();
                 } else {
                     claimer.state = -1;
+                    illegalClaims.increment();
                 }
-                claimer.checked = true;
-                    try {           //notify the player
-                        claimer.awaitDealer.put(0);
-                    } catch (InterruptedException e) {
-                    }
+                if (journal != null)
+                    journal.claim(batch, id, claimer.state, claim);
+                if (replay != null)
+                    replay.verified(claimer.state);
             }
-        }
+            batch++;
 
-    }
+            if (!tokensToRemove.isEmpty()) {
+                removeCardsFromTable();
+                placeCardsOnTable();
+                updateTimerDisplay(true);
+            }
 
-    public void removeSetsContainSameValue(ArrayList<Integer> firstSet) {
-        int third = firstSet.get(0);
-        int second = firstSet.get(1);
-        int first = firstSet.get(2);
-
-        for (Integer Id : waitingForCheck) {
-            if (players[Id].myTokens.contains(third) ||
-                    players[Id].myTokens.contains(second) ||
-                    players[Id].myTokens.contains(first)) {
-
-                waitingForCheck.remove(Id);
-                players[Id].checked = true;
-                try {
-                    players[Id].awaitDealer.put(0);
-                } catch (InterruptedException e) {}
-                ;
-                continue;
+            for (Integer id : claims) {
+                players[id].checked = true;
+                try {           //notify the player of the verdict
+                    players[id].awaitDealer.put(players[id].state);
+                } catch (InterruptedException ignored) {}
             }
+            claims.clear();
         }
     }
 
-    public boolean isSet(ArrayList<Integer> mySet) {
-        synchronized (table) {
-            int[] cardToCheck = new int[env.config.featureSize];
-            boolean allGood = true;
-
-            if (table.slotToCard[mySet.get(0)] == null ||
-                    table.slotToCard[mySet.get(1)] == null ||
-                    table.slotToCard[mySet.get(2)] == null) {
-                allGood = false;
-            }
-
-            if (allGood) {
-                cardToCheck[0] = table.slotToCard[mySet.get(0)];
-                cardToCheck[1] = table.slotToCard[mySet.get(1)];
-                cardToCheck[2] = table.slotToCard[mySet.get(2)];
+    private boolean containsClaimedSlot(List<Integer> claim) {
+        for (int slot : claim)
+            if (claimedSlots[slot])
+                return true;
+        return false;
+    }
 
-                return env.util.testSet(cardToCheck);
-            }
+    /**
+     * @param slots - the slots of a claim (config.featureSize of them).
+     * @return - true iff all the slots have cards and the cards form a legal set.
+     */
+    public boolean isSet(List<Integer> slots) {
+        int[] cards = new int[slots.size()];
+        for (int i = 0; i < cards.length; i++) {
+            cards[i] = table.cardAt(slots.get(i));
+            if (cards[i] == Table.EMPTY)
+                return false;
         }
-        return false;
+        return env.util.testSet(cards);
     }
 
 
@@ -0,0 +1,61 @@
+package bguspl.set.ex;
+
+import java.util.Random;
+
+/**
+ * The cards left in the dealer's deck. The deck is never shuffled as a whole: every draw swaps a random card to the
+ * end and takes it from there (a single step of a Fisher-Yates shuffle), so drawing k cards costs O(k) and the cards
+ * drawn are as random as those at the top of a fully shuffled deck.
+ */
+class Deck {
+
+    private final int[] cards;
+    private int size;
+    private final Random random;
+
+    /**
+     * @param deckSize - the number of cards in the game (the deck starts with cards 0 to deckSize - 1).
+     * @param random   - the random number generator that picks the cards drawn.
+     */
+    Deck(int deckSize, Random random) {
+        this.cards = new int[deckSize];
+        for (int card = 0; card < deckSize; ++card)
+            cards[card] = card;
+        this.size = deckSize;
+        this.random = random;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int cardAt(int index) {
+        return cards[index];
+    }
+
+    /**
+     * Removes a random card from the deck.
+     *
+     * @return - the card drawn.
+     * @pre - the deck is not empty.
+     */
+    int draw() {
+        int index = random.nextInt(size--);
+        int card = cards[index];
+        cards[index] = cards[size];
+        cards[size] = card;
+        return card;
+    }
+
+    /**
+     * Returns the first count cards of the given array to the deck.
+     */
+    void addAll(int[] returned, int count) {
+        System.arraycopy(returned, 0, cards, size, count);
+        size += count;
+    }
+}
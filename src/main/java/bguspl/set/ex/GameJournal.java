@@ -0,0 +1,276 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * An append-only journal of a single game: the random seed, the key presses of the players, the claims verified by the
+ * dealer (with their verdicts), the reshuffles and the score changes. A journal can be played back by GameReplay.
+ * All the records are small binary records, written through a buffer by the thread that made the change.
+ */
+public class GameJournal {
+
+    /**
+     * The journal format and the way the dealer deals the seeded deck (bumped whenever either changes).
+     */
+    private static final int MAGIC = 0x5e7a0002;
+    private static final byte KEY = 1;
+    private static final byte CLAIM = 2;
+    private static final byte RESHUFFLE = 3;
+    private static final byte SCORE = 4;
+    private static final byte END = 5;
+
+    private final Logger logger;
+    private final DataOutputStream out;
+    private final long start = System.currentTimeMillis();
+    private boolean failed;
+
+    /**
+     * Creates the journal file and writes the game settings needed to replay it.
+     *
+     * @param logger - the logger to report errors to.
+     * @param file   - the journal file.
+     * @param config - the game configuration.
+     * @param seed   - the seed of the dealer's random number generator.
+     * @throws IOException - if the file cannot be created.
+     */
+    public GameJournal(Logger logger, Path file, Config config, long seed) throws IOException {
+        this.logger = logger;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeLong(seed);
+        out.writeInt(config.players);
+        out.writeInt(config.featureSize);
+        out.writeInt(config.featureCount);
+        out.writeInt(config.rows);
+        out.writeInt(config.columns);
+    }
+
+    /**
+     * Records a key press that was accepted by a player.
+     */
+    public synchronized void keyPressed(int player, int slot) {
+        try {
+            header(KEY);
+            out.writeInt(player);
+            out.writeInt(slot);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records a claim verified by the dealer.
+     *
+     * @param batch   - the number of the batch of claims verified together.
+     * @param player  - the claiming player.
+     * @param verdict - 1 for a legal set, -1 for a penalty, 0 if released without a verdict.
+     * @param slots   - the slots of the player's tokens.
+     */
+    public synchronized void claim(int batch, int player, int verdict, List<Integer> slots) {
+        try {
+            header(CLAIM);
+            out.writeInt(batch);
+            out.writeInt(player);
+            out.writeByte(verdict);
+            out.writeInt(slots.size());
+            for (int slot : slots)
+                out.writeInt(slot);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records that the dealer returned all the cards to the deck.
+     *
+     * @param timeout - true if the countdown ran out, false if there was no legal set on the table.
+     */
+    public synchronized void reshuffle(boolean timeout) {
+        try {
+            header(RESHUFFLE);
+            out.writeBoolean(timeout);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records a player's new score.
+     */
+    public synchronized void score(int player, int score) {
+        try {
+            header(SCORE);
+            out.writeInt(player);
+            out.writeInt(score);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records the end of the game.
+     *
+     * @param terminated - true if the game was terminated before there were no legal sets left.
+     */
+    public synchronized void end(boolean terminated) {
+        try {
+            header(END);
+            out.writeBoolean(terminated);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Flushes and closes the journal file.
+     */
+    public synchronized void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void header(byte type) throws IOException {
+        out.writeByte(type);
+        out.writeInt((int) (System.currentTimeMillis() - start));
+    }
+
+    private void fail(IOException e) {
+        if (!failed)
+            logger.severe("cannot write the game journal: " + e.getMessage());
+        failed = true;
+    }
+
+    /**
+     * Something the dealer did that a replay has to repeat: verifying a batch of claims, reshuffling because the
+     * countdown ran out, or ending the game early. Everything else follows from the seed and these steps.
+     */
+    static class Step {
+
+        static final int BATCH = 0;
+        static final int TIMEOUT = 1;
+        static final int TERMINATE = 2;
+
+        final int type;
+
+        /**
+         * The claiming players of a batch (in the order the dealer verified them), the slots and the verdict of each
+         * claim.
+         */
+        final List<Integer> players = new ArrayList<>();
+        final List<int[]> slots = new ArrayList<>();
+        final List<Integer> verdicts = new ArrayList<>();
+
+        Step(int type) {
+            this.type = type;
+        }
+    }
+
+    /**
+     * A journal read back from a file.
+     */
+    public static class Recording {
+
+        public final long seed;
+        public final int players;
+        public final int featureSize;
+        public final int featureCount;
+        public final int rows;
+        public final int columns;
+
+        /**
+         * The final scores, the number of accepted key presses of each player and the game length.
+         */
+        public final int[] scores;
+        public final long[] keyPresses;
+        long millis;
+
+        final List<Step> steps = new ArrayList<>();
+
+        private Recording(long seed, int players, int featureSize, int featureCount, int rows, int columns) {
+            this.seed = seed;
+            this.players = players;
+            this.featureSize = featureSize;
+            this.featureCount = featureCount;
+            this.rows = rows;
+            this.columns = columns;
+            this.scores = new int[players];
+            this.keyPresses = new long[players];
+        }
+    }
+
+    /**
+     * Reads a journal file.
+     * Claims with fewer tokens than a set are dropped: they were released without a verdict and changed nothing.
+     *
+     * @param file - the journal file.
+     * @return - the recorded game.
+     * @throws IOException - if the file cannot be read or is not a game journal.
+     */
+    public static Recording read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException(file + " is not a game journal of this version");
+            Recording recording = new Recording(in.readLong(), in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+
+            Step batch = null;
+            int batchNumber = -1;
+            try {
+                while (true) {
+                    byte type = in.readByte();
+                    recording.millis = in.readInt();
+                    if (type == KEY) {
+                        recording.keyPresses[in.readInt()]++;
+                        in.readInt();
+                    } else if (type == CLAIM) {
+                        int number = in.readInt();
+                        int player = in.readInt();
+                        int verdict = in.readByte();
+                        int[] slots = new int[in.readInt()];
+                        for (int i = 0; i < slots.length; i++)
+                            slots[i] = in.readInt();
+                        if (batch == null || number != batchNumber) {
+                            batch = new Step(Step.BATCH);
+                            batchNumber = number;
+                            recording.steps.add(batch);
+                        }
+                        if (slots.length == recording.featureSize) {
+                            batch.players.add(player);
+                            batch.slots.add(slots);
+                            batch.verdicts.add(verdict);
+                        }
+                    } else if (type == RESHUFFLE) {
+                        if (in.readBoolean())
+                            recording.steps.add(new Step(Step.TIMEOUT));
+                    } else if (type == SCORE) {
+                        int player = in.readInt();
+                        recording.scores[player] = in.readInt();
+                    } else if (type == END) {
+                        if (in.readBoolean())
+                            recording.steps.add(new Step(Step.TERMINATE));
+                    } else {
+                        throw new IOException("unknown record type " + type + " in " + file);
+                    }
+                }
+            } catch (EOFException ignored) {
+                // end of the journal
+            }
+            recording.steps.removeIf(step -> step.type == Step.BATCH && step.players.isEmpty());
+            return recording;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterfaceHeadless;
+import bguspl.set.UtilImpl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Plays a recorded game back as fast as possible (no delays, freezes or countdown).
+ * The recorded claims are fed through Player.keyPressed, and the dealer verifies each recorded batch of claims (or
+ * reshuffles, or terminates) only when the replay tells it to. The deck is shuffled with the recorded seed, so the
+ * replayed game deals the same cards: every claim has to get its recorded verdict, and the game has to end with the
+ * recorded scores.
+ */
+public class GameReplay {
+
+    /**
+     * The steps the dealer gets from awaitStep (other than a positive number of claims to verify).
+     */
+    static final int TIMEOUT = -1;
+    static final int TERMINATE = -2;
+
+    /**
+     * How long to wait for a key press to take effect before giving up on the replay.
+     */
+    private static final long STALL_MILLIS = 5000;
+
+    private final GameJournal.Recording recording;
+    private final Env env;
+    private final Table table;
+    private final Dealer dealer;
+    private final Player[] players;
+
+    /**
+     * The dealer puts true when it waits for the next step, and false when the game is over.
+     */
+    private final BlockingQueue<Boolean> ready = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Integer> steps = new LinkedBlockingQueue<>();
+
+    /**
+     * The verdicts of the claims the dealer verified since the last step (in order).
+     */
+    private final BlockingQueue<Integer> verdicts = new LinkedBlockingQueue<>();
+
+    /**
+     * Notified on every change the replay waits for: a token placed or removed, a player taking input again after a
+     * verdict (see Player.freeze) or a claim reaching the dealer.
+     */
+    private final Object progress = new Object();
+
+    /**
+     * The queue of the claims waiting for the dealer, which wakes the replay up when a claim arrives.
+     */
+    private static class ClaimQueue extends ArrayBlockingQueue<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient GameReplay replay;
+
+        ClaimQueue(int capacity, GameReplay replay) {
+            super(capacity);
+            this.replay = replay;
+        }
+
+        @Override
+        public void put(Integer id) throws InterruptedException {
+            super.put(id);
+            replay.changed();
+        }
+    }
+
+    /**
+     * A user interface that displays nothing, but wakes the replay up on the events it waits for.
+     */
+    private class ReplayUserInterface extends UserInterfaceHeadless {
+
+        @Override
+        public void placeToken(int player, int slot) {
+            changed();
+        }
+
+        @Override
+        public void removeToken(int player, int slot) {
+            changed();
+        }
+
+        @Override
+        public void setFreeze(int player, long millies) {
+            changed();
+        }
+    }
+
+    /**
+     * @param logger     - the logger.
+     * @param properties - the configuration to replay with (the recorded game settings and zero delays override it).
+     * @param recording  - the recorded game.
+     */
+    public GameReplay(Logger logger, Properties properties, GameJournal.Recording recording) {
+        this.recording = recording;
+        Config config = new Config(logger, replayProperties(properties, recording));
+        this.env = new Env(logger, config, new ReplayUserInterface(), new UtilImpl(config));
+        this.table = new Table(env);
+        this.players = new Player[config.players];
+        this.dealer = new Dealer(env, table, players, this);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, true); // only the replay presses keys
+    }
+
+    private static Properties replayProperties(Properties properties, GameJournal.Recording recording) {
+        Properties replay = new Properties();
+        replay.putAll(properties);
+        replay.setProperty("FeatureSize", Integer.toString(recording.featureSize));
+        replay.setProperty("FeatureCount", Integer.toString(recording.featureCount));
+        replay.setProperty("Rows", Integer.toString(recording.rows));
+        replay.setProperty("Columns", Integer.toString(recording.columns));
+        replay.setProperty("HumanPlayers", Integer.toString(recording.players));
+        replay.setProperty("ComputerPlayers", "0");
+        replay.setProperty("Hints", "False");
+        replay.setProperty("TurnTimeoutSeconds", "-1"); // the recorded timeouts are replayed as steps
+        replay.setProperty("PointFreezeSeconds", "0");
+        replay.setProperty("PenaltyFreezeSeconds", "0");
+        replay.setProperty("TableDelaySeconds", "0");
+        replay.setProperty("EndGamePauseSeconds", "0");
+        return replay;
+    }
+
+    /**
+     * Replays the game on the calling thread (the dealer and the players run on their own threads).
+     *
+     * @return - a report saying whether the replayed game ended with the recorded scores.
+     */
+    public String run() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        Thread dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+
+        String failure = null;
+        int step = 0;
+        try {
+            for (; step < recording.steps.size(); step++) {
+                boolean playing = ready.take();
+                if (step > 0)
+                    verify(recording.steps.get(step - 1));
+                if (!playing)
+                    throw new IllegalStateException("the game ended early");
+                GameJournal.Step recorded = recording.steps.get(step);
+                if (recorded.type == GameJournal.Step.BATCH) {
+                    for (int i = 0; i < recorded.players.size(); i++)
+                        claim(recorded.players.get(i), recorded.slots.get(i));
+                    steps.put(recorded.players.size());
+                } else {
+                    steps.put(recorded.type == GameJournal.Step.TIMEOUT ? TIMEOUT : TERMINATE);
+                }
+            }
+            boolean playing = ready.take();
+            if (step > 0)
+                verify(recording.steps.get(step - 1));
+            if (playing) {
+                steps.put(TERMINATE);
+                throw new IllegalStateException("the game did not end");
+            }
+        } catch (IllegalStateException e) {
+            failure = e.getMessage();
+            dealer.terminate();
+        }
+        dealerThread.join();
+
+        int[] scores = Arrays.stream(players).mapToInt(Player::score).toArray();
+        if (failure == null && !Arrays.equals(scores, recording.scores))
+            failure = "the scores differ";
+        String game = String.format("%d steps of a %.3f seconds game in %.3f seconds",
+                step, recording.millis / 1000.0, (System.currentTimeMillis() - start) / 1000.0);
+        if (failure == null)
+            return "replayed " + game + ", scores match " + Arrays.toString(scores);
+        return "replay diverged after " + game + ": " + failure + " (replayed scores " + Arrays.toString(scores)
+                + ", recorded " + Arrays.toString(recording.scores) + ")";
+    }
+
+    /**
+     * Checks that the dealer gave the claims of a recorded step their recorded verdicts.
+     */
+    private void verify(GameJournal.Step recorded) {
+        List<Integer> replayed = new ArrayList<>();
+        verdicts.drainTo(replayed);
+        if (recorded.type == GameJournal.Step.BATCH && !replayed.equals(recorded.verdicts))
+            throw new IllegalStateException("the claims of players " + recorded.players.stream().map(id -> id + 1).toList()
+                    + " got the verdicts " + replayed + " instead of " + recorded.verdicts);
+    }
+
+    /**
+     * Makes a player's tokens match a recorded claim and waits until the claim reaches the dealer.
+     */
+    private void claim(int id, int[] slots) {
+        Player player = players[id];
+        for (int slot = 0; slot < env.config.tableSize; slot++)
+            if (table.hasToken(id, slot) && !contains(slots, slot))
+                press(player, slot, false);
+
+        boolean placed = false;
+        for (int slot : slots) {
+            if (!table.hasToken(id, slot)) {
+                press(player, slot, true);
+                placed = true;
+            }
+        }
+        if (!placed) { // the same tokens were claimed before: the last one has to be placed again
+            press(player, slots[slots.length - 1], false);
+            press(player, slots[slots.length - 1], true);
+        }
+        await(() -> dealer.waitingForCheck.contains(id), "player " + (id + 1) + " to claim slots " + Arrays.toString(slots));
+    }
+
+    private void press(Player player, int slot, boolean token) {
+        await(() -> player.state == 0 && table.tableIsReady, "player " + (player.id + 1) + " to take input");
+        player.keyPressed(slot);
+        await(() -> table.hasToken(player.id, slot) == token, "player " + (player.id + 1) + " to toggle slot " + slot);
+    }
+
+    private static boolean contains(int[] slots, int slot) {
+        for (int s : slots)
+            if (s == slot)
+                return true;
+        return false;
+    }
+
+    /**
+     * Blocks until a condition holds, checking it again on every change that wakes the replay up.
+     */
+    private void await(BooleanSupplier condition, String what) {
+        long deadline = System.currentTimeMillis() + STALL_MILLIS;
+        synchronized (progress) {
+            while (!condition.getAsBoolean()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                    throw new IllegalStateException("timed out waiting for " + what);
+                try {
+                    progress.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while waiting for " + what);
+                }
+            }
+        }
+    }
+
+    private void changed() {
+        synchronized (progress) {
+            progress.notifyAll();
+        }
+    }
+
+    long seed() {
+        return recording.seed;
+    }
+
+    /**
+     * @return - the ids of the winners of the replayed game (empty until it ends).
+     */
+    public int[] winners() {
+        return dealer.winners();
+    }
+
+    ArrayBlockingQueue<Integer> claimQueue(int capacity) {
+        return new ClaimQueue(capacity, this);
+    }
+
+    /**
+     * Called by the dealer with the verdict of every claim it verified (see GameJournal.claim).
+     */
+    void verified(int verdict) {
+        verdicts.add(verdict);
+    }
+
+    /**
+     * Called by the dealer when it is ready for the next step.
+     *
+     * @return - the number of claims to verify, TIMEOUT or TERMINATE.
+     */
+    int awaitStep() throws InterruptedException {
+        ready.put(true);
+        return steps.take();
+    }
+
+    /**
+     * Called by the dealer when the game is over.
+     */
+    void finished() {
+        ready.add(false);
+    }
+}
@@ -0,0 +1,28 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Random;
+
+/**
+ * Plays like the oracle, but at human speed: it takes a normally distributed reaction time to spot each set
+ * (config.humanReactionMillis on average, config.humanReactionDeviationMillis standard deviation) and
+ * config.humanKeyMillis between key presses.
+ */
+class HumanLikeStrategy extends OracleStrategy {
+
+    HumanLikeStrategy(Env env, Table table, Player player, Random random) {
+        super(env, table, player, random);
+    }
+
+    @Override
+    protected long reactionMillis() {
+        double reaction = env.config.humanReactionMillis + random.nextGaussian() * env.config.humanReactionDeviationMillis;
+        return Math.max(0, Math.round(reaction));
+    }
+
+    @Override
+    protected long keyMillis() {
+        return env.config.humanKeyMillis;
+    }
+}
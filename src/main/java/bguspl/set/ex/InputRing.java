@@ -0,0 +1,207 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded ring of key presses (non-negative ints) with a single producer and a single consumer. The producer never
+ * blocks or allocates: when the ring is full, the policy decides which press is lost. The consumer parks while the
+ * ring is empty. Other threads write to the ring too, but only to cancel the pending presses of a value (e.g. the
+ * dealer, for a slot whose card was removed). A cancelled press keeps its entry until the consumer skips it.
+ * Every entry holds the sequence number of its press with the value, so a cancel that read head and tail before the
+ * entry was reused for a newer press does not match the newer press.
+ *
+ * @inv head <= tail <= head + capacity
+ */
+class InputRing {
+
+    /**
+     * What to do with a key press when the ring is full, or when the same key is already pending.
+     */
+    enum Policy {
+        /**
+         * Drop the new press when the ring is full.
+         */
+        DROP_NEWEST,
+        /**
+         * Drop the oldest pending press to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * Like DROP_NEWEST, but a press of a key that is already pending cancels it (two toggles of a token are none).
+         */
+        COALESCE;
+
+        /**
+         * @param name - a policy name as written in the config: drop-newest, drop-oldest or coalesce.
+         */
+        static Policy of(String name) {
+            return valueOf(name.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    /**
+     * The value of an entry that was cancelled (or already taken, in COALESCE mode).
+     */
+    private static final int CANCELLED = -1;
+
+    /**
+     * The pending presses: the low 32 bits of the sequence number of a press, followed by its value (see entry).
+     */
+    private final AtomicLongArray entries;
+    private final int capacity;
+    private final Policy policy;
+
+    /**
+     * The sequence number of the next press to take and of the next press to write (entry = sequence % capacity).
+     * Only the consumer advances head, except for the producer dropping the oldest press in DROP_OLDEST mode.
+     */
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The consumer thread while it is parked waiting for a press (null otherwise).
+     */
+    private volatile Thread waiting;
+
+    /**
+     * The number of presses lost because the ring was full, and of pairs of presses cancelled by COALESCE
+     * (written by the producer only).
+     */
+    private volatile long dropped;
+    private volatile long coalesced;
+
+    InputRing(int capacity, Policy policy) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.entries = new AtomicLongArray(capacity);
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    /**
+     * @return - the entry of the press with the given sequence number and value (the sequence number wraps around
+     *           every 2^32 presses, much more than a cancel can fall behind).
+     */
+    private static long entry(long sequence, int value) {
+        return sequence << Integer.SIZE | (value & 0xFFFFFFFFL);
+    }
+
+    private static int value(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * Adds a key press (producer thread only). Wait-free: never blocks, and takes at most capacity steps.
+     *
+     * @param value - the key press (non-negative).
+     * @return - false iff the press was dropped because the ring is full (in DROP_OLDEST mode the oldest press is
+     *           dropped instead, and the new one is always added).
+     */
+    boolean offer(int value) {
+        long t = tail.get();
+        if (policy == Policy.COALESCE && cancel(value, head.get(), t)) {
+            coalesced++;
+            return true;
+        }
+        long h = head.get();
+        if (t - h >= capacity) {
+            if (policy != Policy.DROP_OLDEST) {
+                dropped++;
+                return false;
+            }
+            // if the CAS fails the consumer has just taken the oldest press, which made room as well
+            if (head.compareAndSet(h, h + 1))
+                dropped++;
+        }
+        entries.set(index(t), entry(t, value));
+        tail.set(t + 1);
+        Thread consumer = waiting;
+        if (consumer != null)
+            LockSupport.unpark(consumer);
+        return true;
+    }
+
+    /**
+     * Takes the oldest pending press, waiting until there is one (consumer thread only).
+     *
+     * @return - the key press.
+     * @throws InterruptedException - if the consumer is interrupted while waiting.
+     */
+    int take() throws InterruptedException {
+        while (true) {
+            long h = head.get();
+            if (h == tail.get()) {
+                await(h);
+                continue;
+            }
+            int value;
+            if (policy == Policy.COALESCE) {
+                // claims the entry, so a concurrent cancel either happens before (and the press is skipped) or fails
+                value = value(entries.getAndSet(index(h), entry(h, CANCELLED)));
+                head.set(h + 1);
+            } else {
+                value = value(entries.get(index(h)));
+                if (!head.compareAndSet(h, h + 1))
+                    continue; // the producer dropped this press (and may have reused the entry)
+            }
+            if (value != CANCELLED)
+                return value;
+        }
+    }
+
+    private void await(long h) throws InterruptedException {
+        waiting = Thread.currentThread();
+        // checked again after publishing the waiting thread, so a press written meanwhile is never missed
+        if (h == tail.get())
+            LockSupport.park(this);
+        waiting = null;
+        if (Thread.interrupted())
+            throw new InterruptedException();
+    }
+
+    /**
+     * Cancels all the pending presses of a value (any thread). A press the consumer is taking at the same time may be
+     * taken anyway.
+     */
+    void cancel(int value) {
+        long t = tail.get();
+        boolean cancelled;
+        do {
+            cancelled = cancel(value, head.get(), t);
+        } while (cancelled);
+    }
+
+    /**
+     * Cancels the first pending press of a value among the presses with sequence numbers from (inclusive) to
+     * (exclusive). The range may be stale: an entry reused by a newer press since is not cancelled.
+     *
+     * @return - true iff a press was cancelled.
+     */
+    boolean cancel(int value, long from, long to) {
+        for (long s = from; s < to; s++)
+            if (entries.compareAndSet(index(s), entry(s, value), entry(s, CANCELLED)))
+                return true;
+        return false;
+    }
+
+    /**
+     * @return - the number of pending presses (including cancelled ones not taken yet).
+     */
+    int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    long dropped() {
+        return dropped;
+    }
+
+    long coalesced() {
+        return coalesced;
+    }
+}
@@ -0,0 +1,180 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Finds a legal set on the table with Util.streamSets and presses exactly its slots: first removing the player's other
+ * tokens, then placing the missing ones, one key at a time. It never claims an illegal set unless the table changes
+ * while it claims, so it loads the dealer with real claims only.
+ * Every oracle picks a random one of the sets it finds (so that oracles do not all race for the same set), searches
+ * the table again only once its cards changed, and polls less and less often while it has nothing to do.
+ */
+class OracleStrategy implements Strategy {
+
+    /**
+     * How long to wait between checks of the table (and of a key press taking effect), and the longest wait while
+     * there is no set on the table or the claim waits for the dealer (the wait doubles up to it).
+     */
+    private static final long POLL_MILLIS = 1;
+    private static final long MAX_IDLE_MILLIS = 32;
+
+    /**
+     * The number of sets to pick a target from (the search stops after finding them).
+     */
+    private static final int MAX_CHOICES = 16;
+
+    /**
+     * How long a key press may take to take effect before it is considered lost.
+     */
+    private static final long PRESS_TIMEOUT_MILLIS = 100;
+
+    protected final Env env;
+    private final Table table;
+    private final Player player;
+    protected final Random random;
+
+    /**
+     * The slots and cards of the set the player goes for (null if none).
+     */
+    private int[] targetSlots;
+    private int[] targetCards;
+
+    /**
+     * The cards on the table when it was last searched and had no set (null if the last search found one).
+     */
+    private int[] searchedCards;
+
+    /**
+     * How long to wait if there is still nothing to do.
+     */
+    private long idleMillis = POLL_MILLIS;
+
+    /**
+     * The last key pressed, until it takes effect: the slot, the expected token state and the deadline.
+     */
+    private int pendingSlot = -1;
+    private boolean pendingToken;
+    private long pendingDeadline;
+
+    OracleStrategy(Env env, Table table, Player player, Random random) {
+        this.env = env;
+        this.table = table;
+        this.player = player;
+        this.random = random;
+    }
+
+    @Override
+    public long play() {
+        long now = System.currentTimeMillis();
+        if (pendingSlot != -1) {
+            if (table.hasToken(player.id, pendingSlot) != pendingToken && now < pendingDeadline)
+                return POLL_MILLIS;
+            pendingSlot = -1;
+        }
+
+        if (targetSlots == null || !targetOnTable()) {
+            if (!findTarget())
+                return idle();
+            idleMillis = POLL_MILLIS;
+            long reaction = reactionMillis();
+            if (reaction > 0)
+                return reaction;
+        }
+
+        int slot = nextKey();
+        if (slot == -1)
+            return idle(); // the claim is on the table, waiting for the dealer
+        boolean token = !table.hasToken(player.id, slot);
+        if (player.keyPressed(slot)) {
+            pendingSlot = slot;
+            pendingToken = token;
+            pendingDeadline = now + PRESS_TIMEOUT_MILLIS;
+            idleMillis = POLL_MILLIS;
+            return Math.max(keyMillis(), POLL_MILLIS);
+        }
+        return POLL_MILLIS;
+    }
+
+    /**
+     * @return - the time to wait when there is nothing to do, which doubles every time up to MAX_IDLE_MILLIS.
+     */
+    private long idle() {
+        long wait = idleMillis;
+        idleMillis = Math.min(2 * idleMillis, MAX_IDLE_MILLIS);
+        return wait;
+    }
+
+    /**
+     * @return - the time to wait after finding a new set before pressing its first key.
+     */
+    protected long reactionMillis() {
+        return 0;
+    }
+
+    /**
+     * @return - the time to wait after each key press.
+     */
+    protected long keyMillis() {
+        return POLL_MILLIS;
+    }
+
+    /**
+     * @return - the next slot to press: one of the player's tokens that is not in the set, then a slot of the set that
+     *           has no token, or -1 if the player's tokens are exactly the set.
+     */
+    private int nextKey() {
+        for (int slot = 0; slot < env.config.tableSize; slot++)
+            if (table.hasToken(player.id, slot) && !contains(targetSlots, slot))
+                return slot;
+        for (int slot : targetSlots)
+            if (!table.hasToken(player.id, slot))
+                return slot;
+        return -1;
+    }
+
+    private boolean targetOnTable() {
+        for (int i = 0; i < targetSlots.length; i++)
+            if (table.cardAt(targetSlots[i]) != targetCards[i])
+                return false;
+        return true;
+    }
+
+    private boolean findTarget() {
+        targetSlots = null;
+        int[] cards = IntStream.range(0, env.config.tableSize).map(table::cardAt).filter(card -> card != Table.EMPTY).toArray();
+        if (Arrays.equals(cards, searchedCards))
+            return false; // still the same cards, with no set
+        // pick one of the sets found at random (reservoir sampling)
+        int[][] choice = new int[1][];
+        int[] found = new int[1];
+        env.util.streamSets(cards, false).limit(MAX_CHOICES).forEach(set -> {
+            if (random.nextInt(++found[0]) == 0)
+                choice[0] = set;
+        });
+        searchedCards = found[0] == 0 ? cards : null;
+        if (found[0] == 0)
+            return false;
+
+        int[] cardsOfSet = choice[0];
+        int[] slots = new int[cardsOfSet.length];
+        for (int i = 0; i < cardsOfSet.length; i++) {
+            slots[i] = table.slotOf(cardsOfSet[i]);
+            if (slots[i] == Table.EMPTY)
+                return false; // the card was just removed
+        }
+        targetCards = cardsOfSet;
+        targetSlots = slots;
+        return true;
+    }
+
+    private static boolean contains(int[] slots, int slot) {
+        for (int s : slots)
+            if (s == slot)
+                return true;
+        return false;
+    }
+}
@@ -2,11 +2,12 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.Metrics;
+import bguspl.set.Threads;
 
 import java.util.ArrayList;
 import java.util.Random;
 import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 
 /**
  * This class manages the players' threads and data
@@ -32,9 +33,9 @@ public class Player implements Runnable {
     public final int id;
 
     /**
-     * The thread representing the current player.
+     * The thread representing the current player (set by the dealer before it starts the thread).
      */
-    private Thread playerThread;
+    private volatile Thread playerThread;
 
     /**
      * The thread of the AI (computer) player (an additional thread used to generate
@@ -59,9 +60,17 @@ public class Player implements Runnable {
      */
     private int score;
 
+    /**
+     * The number of tokens placed or removed by the player.
+     */
+    private long moves;
+
     protected ArrayBlockingQueue<Integer> awaitDealer;
 
-    private ArrayBlockingQueue<Integer> queue;
+    /**
+     * The key presses waiting to be handled by the player thread (the slots pressed).
+     */
+    private final InputRing input;
 
     public ArrayList<Integer> myTokens;
 
@@ -69,6 +78,22 @@ public class Player implements Runnable {
 
     public volatile int state;
 
+    /**
+     * The journal to record the accepted key presses and the score changes to (null if the game is not recorded).
+     */
+    private final GameJournal journal;
+
+    /**
+     * The time from a claim (the last token placed) until the dealer releases the player, in nanoseconds, and the
+     * key presses of all the players: accepted, rejected (the table is not ready or the player is frozen or waiting
+     * for the dealer), dropped by the input ring when full, and coalesced with a press of the same key.
+     */
+    private final Metrics.Histogram claimLatencyNanos;
+    private final Metrics.Counter keyPresses;
+    private final Metrics.Counter rejectedKeyPresses;
+    private final Metrics.Counter droppedKeyPresses;
+    private final Metrics.Counter coalescedKeyPresses;
+
     /**
      * The class constructor.
      *
@@ -85,12 +110,19 @@ public class Player implements Runnable {
         this.id = id;
         this.human = human;
         this.dealer = dealer;
-        this.queue = new ArrayBlockingQueue<Integer>(env.config.featureSize);
+        this.journal = dealer.journal;
+        this.input = new InputRing(env.config.inputCapacity, InputRing.Policy.of(env.config.inputPolicy));
         this.awaitDealer = new ArrayBlockingQueue<Integer>(1);
         terminate = false;
         checked = false;
         state = 0;
         myTokens = new ArrayList<Integer>(env.config.featureSize);
+        claimLatencyNanos = env.metrics.histogram("player.claimLatencyNanos");
+        keyPresses = env.metrics.counter("player.keyPresses");
+        rejectedKeyPresses = env.metrics.counter("player.rejectedKeyPresses");
+        droppedKeyPresses = env.metrics.counter("player.droppedKeyPresses");
+        coalescedKeyPresses = env.metrics.counter("player.coalescedKeyPresses");
+        env.metrics.gauge("player" + (id + 1) + ".queue", input::size);
     }
 
     /**
@@ -99,7 +131,6 @@ public class Player implements Runnable {
      */
     @Override
     public void run() {
-        playerThread = Thread.currentThread();
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
         if (!human)
             createArtificialIntelligence();
@@ -108,13 +139,13 @@ public class Player implements Runnable {
             Integer currentToken;
             try {
                 state = 0;
-                currentToken = queue.take();
-                if (table.tokens[this.id][currentToken] == true) {
-                    table.removeToken(id, currentToken);
+                currentToken = input.take();
+                if (table.removeToken(id, currentToken)) {
                     myTokens.remove(currentToken);
-                } else if (myTokens.size() < env.config.featureSize && table.slotToCard[currentToken] != null) {
-                    table.placeToken(id, currentToken);
+                    moves++;
+                } else if (myTokens.size() < env.config.featureSize && table.placeToken(id, currentToken)) {
                     myTokens.add(currentToken);
+                    moves++;
                     if (myTokens.size() == env.config.featureSize)
                         checkDealer();
                 }
@@ -133,20 +164,24 @@ public class Player implements Runnable {
 
     private void checkDealer() {
 
+        long claimed = System.nanoTime();
         try {
             dealer.waitingForCheck.put(this.id);
         } catch (InterruptedException e) {
             System.out.println("Got interrupted");
         }
 
+        // the dealer hands over the verdict (state may be reset by a reshuffle before this thread reads it)
+        Integer verdict;
         try {       //make the player to wait
-            awaitDealer.take();
+            verdict = awaitDealer.take();
         } catch (InterruptedException e) {
-
+            verdict = awaitDealer.poll(); // terminated, maybe right after the verdict
         }
-        if (state == 1)
+        claimLatencyNanos.record(System.nanoTime() - claimed);
+        if (verdict != null && verdict == 1)
             point();
-        if (state == -1)
+        if (verdict != null && verdict == -1)
             penalty();
         checked = false;
         state = 0;
@@ -155,21 +190,17 @@ public class Player implements Runnable {
     /**
      * Creates an additional thread for an AI (computer) player. The main loop of
      * this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it
-     * is not full.
+     * key presses, as decided by the player's strategy (see Strategy).
      */
     private void createArtificialIntelligence() {
         // note: this is a very, very smart AI (!)
-        aiThread = new Thread(() -> {
+        aiThread = Threads.newThread(env.config, () -> {
             env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
+            Strategy strategy = Strategy.create(env, table, this, new Random(dealer.seed + id));
             while (!terminate) {
-                Random rand = new Random();
-                int random = rand.nextInt(env.config.tableSize);
-                keyPressed(random);
+                long delay = strategy.play();
                 try {
-                    synchronized (this) {
-                        aiThread.sleep(3);
-                    }
+                    Thread.sleep(delay);
                 } catch (InterruptedException ignored) {
                 }
             }
@@ -178,14 +209,26 @@ public class Player implements Runnable {
         aiThread.start();
     }
 
+    /**
+     * Starts the player thread (created by the dealer). The thread is known before it runs, so the dealer can
+     * terminate the player even if the game is closed before the thread got to run.
+     */
+    void start(Thread thread) {
+        playerThread = thread;
+        thread.start();
+    }
+
     /**
      * Called when the game should be terminated.
      */
     public void terminate() {
         terminate = true;
-        playerThread.interrupt();
+        Thread thread = playerThread;
+        if (thread == null)
+            return; // never started
+        thread.interrupt();
         try{
-            playerThread.join();
+            thread.join();
         } catch(InterruptedException e){}
     }
 
@@ -193,12 +236,26 @@ public class Player implements Runnable {
      * This method is called when a key is pressed.
      *
      * @param slot - the slot corresponding to the key pressed.
-     * @throws InterruptedException
+     * @return - true iff the key press was accepted (the table is ready, the player is not waiting for the dealer
+     *           and the input ring did not drop it).
      */
-    public void keyPressed(int slot) {
-        if (table.tableIsReady && state == 0) {
-            queue.offer(slot);
+    public boolean keyPressed(int slot) {
+        if (!table.tableIsReady || state != 0) {
+            rejectedKeyPresses.increment();
+            return false;
         }
+        long dropped = input.dropped(), coalesced = input.coalesced();
+        boolean added = input.offer(slot);
+        if (input.dropped() != dropped)
+            droppedKeyPresses.increment();
+        if (input.coalesced() != coalesced)
+            coalescedKeyPresses.increment();
+        if (!added)
+            return false;
+        keyPresses.increment();
+        if (journal != null)
+            journal.keyPressed(id, slot);
+        return true;
     }
 
     /**
@@ -213,24 +270,9 @@ public class Player implements Runnable {
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
         myTokens.clear();
         env.ui.setScore(id, ++score);
-
-        // int ignored = table.countCards(); // this part is just for demonstration in
-        // the unit tests
-        long sleepTime = env.config.pointFreezeMillis + System.currentTimeMillis();
-
-        while (System.currentTimeMillis() < sleepTime) {
-            env.ui.setFreeze(id, sleepTime - System.currentTimeMillis());
-
-            if (sleepTime - System.currentTimeMillis() > 900) {
-                try {
-                    playerThread.sleep(900);
-                } catch (InterruptedException e) {
-                }
-            }
-
-        }
-        env.ui.setFreeze(id, 0);
-        state = 0;
+        if (journal != null)
+            journal.score(id, score);
+        freeze(env.config.pointFreezeMillis);
     }
 
     /**
@@ -239,36 +281,51 @@ public class Player implements Runnable {
     public void penalty() {
         int ignored = table.countCards(); // this part is just for demonstration in
         // the unit tests
-        long sleepTime = env.config.penaltyFreezeMillis + System.currentTimeMillis();
-
-        while (System.currentTimeMillis() < sleepTime) {
-            env.ui.setFreeze(id, sleepTime - System.currentTimeMillis());
+        freeze(env.config.penaltyFreezeMillis);
+    }
 
-            if (sleepTime - System.currentTimeMillis() > 900) {
-                try {
-                    playerThread.sleep(900);
-                } catch (InterruptedException e) {
-                }
+    /**
+     * Freeze the player until a deadline. The thread sleeps between updates of the freeze display, which happen every
+     * config.displayRefreshMillis (aligned to whole values of the remaining time), so it uses no CPU while frozen.
+     * The player takes input again before the display is cleared (a replay waits for that event to press keys).
+     *
+     * @param millis - the freeze time in milliseconds.
+     */
+    private void freeze(long millis) {
+        long deadline = System.currentTimeMillis() + millis;
+        long remaining = millis;
+        while (remaining > 0 && !terminate) {
+            env.ui.setFreeze(id, remaining);
+            try {
+                Thread.sleep((remaining - 1) % env.config.displayRefreshMillis + 1);
+            } catch (InterruptedException ignored) {
+                // terminated (checked by the loop)
             }
-
+            remaining = deadline - System.currentTimeMillis();
         }
-        env.ui.setFreeze(id, 0);
         state = 0;
-
+        env.ui.setFreeze(id, 0);
     }
 
     public int score() {
         return score;
     }
 
-    public BlockingQueue<Integer> getQueue() {
-        return this.queue;
+    /**
+     * Cancels the key presses of a slot that are still waiting (called by the dealer when the card is removed).
+     */
+    void cancelKeyPresses(int slot) {
+        input.cancel(slot);
     }
 
     public int getScore() {
         return score;
     }
 
+    public long moves() {
+        return moves;
+    }
+
     public boolean getTerminate() {
         return terminate;
     }
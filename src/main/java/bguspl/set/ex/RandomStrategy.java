@@ -0,0 +1,29 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Random;
+
+/**
+ * Presses a random slot every few milliseconds (the original computer player).
+ */
+class RandomStrategy implements Strategy {
+
+    private static final long KEY_MILLIS = 3;
+
+    private final Env env;
+    private final Player player;
+    private final Random random;
+
+    RandomStrategy(Env env, Player player, Random random) {
+        this.env = env;
+        this.player = player;
+        this.random = random;
+    }
+
+    @Override
+    public long play() {
+        player.keyPressed(random.nextInt(env.config.tableSize));
+        return KEY_MILLIS;
+    }
+}
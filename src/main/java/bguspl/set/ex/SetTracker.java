@@ -0,0 +1,159 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Keeps count of the legal sets among the cards still in play (deck + table) and among the cards on the table.
+ * For featureSize == 3 the counts are exact and updated incrementally as the dealer moves cards, so "is there a set
+ * left" is answered in O(1). Other feature sizes are only tracked approximately: a changed pool is searched again
+ * for a single set when asked, and its count is 1 or 0.
+ */
+class SetTracker {
+
+    /**
+     * The cards in the deck or on the table.
+     */
+    private final CardPool inPlay;
+
+    /**
+     * The cards on the table.
+     */
+    private final CardPool onTable;
+
+    SetTracker(Env env) {
+        this.inPlay = new CardPool(env, true);
+        this.onTable = new CardPool(env, false);
+    }
+
+    /**
+     * Called when a card joins the game (i.e. is added to the deck).
+     */
+    void addedToDeck(int card) {
+        inPlay.add(card);
+    }
+
+    /**
+     * Called when a card is moved from the deck to the table.
+     */
+    void placedOnTable(int card) {
+        onTable.add(card);
+    }
+
+    /**
+     * Called when a card is removed from the table.
+     *
+     * @param card     - the card removed.
+     * @param collected - true iff the card was part of a collected set (and is out of the game), false iff it
+     *                   returns to the deck.
+     */
+    void removedFromTable(int card, boolean collected) {
+        onTable.remove(card);
+        if (collected)
+            inPlay.remove(card);
+    }
+
+    /**
+     * @return - true iff there is a legal set among the cards in the deck and on the table.
+     */
+    boolean hasSetInPlay() {
+        return inPlay.hasSet();
+    }
+
+    /**
+     * @return - true iff there is a legal set among the cards on the table.
+     */
+    boolean hasSetOnTable() {
+        return onTable.hasSet();
+    }
+
+    /**
+     * @return - the number of legal sets among the cards in the deck and on the table (only 1 or 0 unless
+     *           featureSize == 3).
+     */
+    int setsInPlay() {
+        return inPlay.sets();
+    }
+
+    /**
+     * @return - the number of legal sets among the cards on the table (only 1 or 0 unless featureSize == 3).
+     */
+    int setsOnTable() {
+        return onTable.sets();
+    }
+
+    /**
+     * A collection of distinct cards and the number of legal sets in it.
+     * For featureSize == 3 every pair of cards is completed to a set by exactly one card, so adding or removing a
+     * card changes the count by the number of pairs of other cards it completes (O(size) per update).
+     * Other feature sizes fall back to searching for a set when asked and something changed (in parallel only for
+     * the cards in play: a table is too small to be worth the fork/join pool).
+     */
+    private static class CardPool {
+
+        private final Env env;
+        private final boolean exact;
+        private final boolean parallel;
+        private final int[] cards;
+        private final int[] position;
+        private int size;
+
+        private int sets;
+        private boolean dirty;
+
+        CardPool(Env env, boolean parallel) {
+            this.env = env;
+            this.exact = env.config.featureSize == 3;
+            this.parallel = parallel;
+            this.cards = new int[env.config.deckSize];
+            this.position = new int[env.config.deckSize];
+            Arrays.fill(position, -1);
+        }
+
+        void add(int card) {
+            if (position[card] >= 0) return;
+            if (exact) sets += setsCompletedBy(card);
+            position[card] = size;
+            cards[size++] = card;
+            dirty = true;
+        }
+
+        void remove(int card) {
+            int index = position[card];
+            if (index < 0) return;
+            int last = cards[--size];
+            cards[index] = last;
+            position[last] = index;
+            position[card] = -1;
+            if (exact) sets -= setsCompletedBy(card);
+            dirty = true;
+        }
+
+        /**
+         * Counts the pairs of cards in the pool (not including the given card) that form a set with the given card.
+         */
+        private int setsCompletedBy(int card) {
+            int count = 0;
+            for (int i = 0; i < size; ++i) {
+                int third = env.util.completeSet(cards[i], card);
+                if (third > cards[i] && position[third] >= 0) ++count;
+            }
+            return count;
+        }
+
+        boolean hasSet() {
+            return sets() > 0;
+        }
+
+        int sets() {
+            if (!exact && dirty) {
+                Stream<int[]> found = env.util.streamSets(Arrays.copyOf(cards, size), true);
+                sets = (parallel ? found.parallel() : found).findAny().isPresent() ? 1 : 0;
+                dirty = false;
+            }
+            return sets;
+        }
+    }
+}
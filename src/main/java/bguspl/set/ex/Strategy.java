@@ -0,0 +1,39 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Random;
+
+/**
+ * Decides which keys a computer player presses, and when. The player's input thread calls play repeatedly and
+ * sleeps for the returned time between calls.
+ */
+public interface Strategy {
+
+    /**
+     * Presses the next key (if any).
+     *
+     * @return - the number of milliseconds to wait before the next call.
+     */
+    long play();
+
+    /**
+     * Creates the strategy configured for a computer player (see config.computerStrategies).
+     *
+     * @param env    - the environment object.
+     * @param table  - the table object.
+     * @param player - the computer player.
+     * @param random - the source of randomness of the strategy.
+     * @return - the player's strategy.
+     */
+    static Strategy create(Env env, Table table, Player player, Random random) {
+        switch (env.config.computerStrategy(player.id)) {
+            case "oracle":
+                return new OracleStrategy(env, table, player, random);
+            case "human":
+                return new HumanLikeStrategy(env, table, player, random);
+            default:
+                return new RandomStrategy(env, player, random);
+        }
+    }
+}
@@ -1,42 +1,92 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.Metrics;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.stream.Collectors;
 
 
 /**
  * This class contains the data that is visible to the player.
+ * Every slot is guarded by its own lock, so players placing tokens on different slots never contend, and the table
+ * delay of the dealer's card animation is spent without holding any lock. All the state can be read without locking.
  *
  * @inv slotToCard[x] == y iff cardToSlot[y] == x
+ * @inv slot x is marked occupied iff slotToCard[x] != EMPTY
+ * @inv tokens are only placed on slots that have a card
  */
 public class Table {
 
+    /**
+     * The value of an empty slot in slotToCard, and of a card that is not on the table in cardToSlot.
+     */
+    public static final int EMPTY = -1;
+
+    /**
+     * Volatile access to the elements of slotToCard and cardToSlot.
+     */
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
     /**
      * The game environment object.
      */
     private final Env env;
 
     /**
-     * Mapping between a slot and the card placed in it (null if none).
+     * Mapping between a slot and the card placed in it (EMPTY if none).
+     */
+    protected final int[] slotToCard; // card per slot (if any)
+
+    /**
+     * Mapping between a card and the slot it is in (EMPTY if none).
+     */
+    protected final int[] cardToSlot; // slot per card (if any)
+
+    /**
+     * The number of longs in a bitmask of slots (one bit per slot).
+     */
+    private final int slotWords;
+
+    /**
+     * The players' tokens, a bitmask of slots per player: the token of player p on slot s is
+     * bit (s % 64) of tokens[p * slotWords + s / 64].
      */
-    protected final Integer[] slotToCard; // card per slot (if any)
+    protected final AtomicLongArray tokens;
 
     /**
-     * Mapping between a card and the slot it is in (null if none).
+     * The number of longs in a bitmask of players (one bit per player).
      */
-    protected final Integer[] cardToSlot; // slot per card (if any)
+    private final int playerWords;
 
-    protected boolean[][] tokens;
+    /**
+     * The reverse index of the tokens, a bitmask of players per slot: player p has a token on slot s iff
+     * bit (p % 64) of slotTokens[s * playerWords + p / 64] is set. Changed together with tokens, under the slot lock.
+     */
+    private final AtomicLongArray slotTokens;
+
+    /**
+     * The slots that have a card in them: bit (s % 64) of occupied[s / 64] is set iff slot s has a card.
+     */
+    private final AtomicLongArray occupied;
 
-    // public ArrayList <ArrayList<Integer>> tokens;
+    /**
+     * The lock of every slot, held while changing the card or the tokens on the slot.
+     */
+    private final Object[] slotLocks;
+
+    /**
+     * How long the slot locks are held (in nanoseconds).
+     */
+    private final Metrics.Histogram lockHoldNanos;
 
     protected int numOfPlayers;
 
-    boolean tableIsReady = false;
+    volatile boolean tableIsReady = false;
 
 
 
@@ -44,22 +94,24 @@ public class Table {
      * Constructor for testing.
      *
      * @param env        - the game environment objects.
-     * @param slotToCard - mapping between a slot and the card placed in it (null if none).
-     * @param cardToSlot - mapping between a card and the slot it is in (null if none).
+     * @param slotToCard - mapping between a slot and the card placed in it (all EMPTY).
+     * @param cardToSlot - mapping between a card and the slot it is in (all EMPTY).
      */
-    public Table(Env env, Integer[] slotToCard, Integer[] cardToSlot) {
+    public Table(Env env, int[] slotToCard, int[] cardToSlot) {
 
         this.env = env;
         this.tableIsReady = false;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
         numOfPlayers = env.config.players;
-        this.tokens = new boolean[env.config.players][env.config.tableSize];
-        for(int i = 0; i< env.config.players; i++){
-            for(int j = 0; j < env.config.tableSize ; j++){
-                this.tokens[i][j] = false;
-            }
-        }
+        this.slotWords = (env.config.tableSize + Long.SIZE - 1) / Long.SIZE;
+        this.tokens = new AtomicLongArray(env.config.players * slotWords);
+        this.playerWords = (env.config.players + Long.SIZE - 1) / Long.SIZE;
+        this.slotTokens = new AtomicLongArray(env.config.tableSize * playerWords);
+        this.occupied = new AtomicLongArray(slotWords);
+        this.slotLocks = new Object[env.config.tableSize];
+        Arrays.setAll(slotLocks, slot -> new Object());
+        this.lockHoldNanos = env.metrics.histogram("table.lockHoldNanos");
     }
 
     /**
@@ -69,16 +121,21 @@ public class Table {
      */
     public Table(Env env) {
 
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
+        this(env, emptyArray(env.config.tableSize), emptyArray(env.config.deckSize));
     }
 
+    private static int[] emptyArray(int length) {
+        int[] array = new int[length];
+        Arrays.fill(array, EMPTY);
+        return array;
+    }
 
     /**
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
+        int[] cards = Arrays.stream(slotToCard).filter(card -> card != EMPTY).toArray();
+        env.util.streamSets(cards, true).forEach(set -> {
             StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
             List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
             int[][] features = env.util.cardsToFeatures(set);
@@ -93,12 +150,36 @@ public class Table {
      */
     public int countCards() {
         int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
-                ++cards;
+        for (int i = 0; i < slotWords; ++i)
+            cards += Long.bitCount(occupied.get(i));
         return cards;
     }
 
+    /**
+     * @param slot - a slot on the table.
+     * @return - the card in the slot, or EMPTY if there is none.
+     */
+    public int cardAt(int slot) {
+        return (int) INTS.getVolatile(slotToCard, slot);
+    }
+
+    /**
+     * @param card - a card id.
+     * @return - the slot the card is in, or EMPTY if it is not on the table.
+     */
+    public int slotOf(int card) {
+        return (int) INTS.getVolatile(cardToSlot, card);
+    }
+
+    /**
+     * @param player - the player id.
+     * @param slot   - a slot on the table.
+     * @return - true iff the player has a token on the slot.
+     */
+    public boolean hasToken(int player, int slot) {
+        return (tokens.get(player * slotWords + slot / Long.SIZE) & (1L << slot)) != 0;
+    }
+
     /**
      * Places a card on the table in a grid slot.
      * @param card - the card id to place in the slot.
@@ -106,48 +187,85 @@ public class Table {
      *
      * @post - the card placed is on the table, in the assigned slot.
      */
-    public synchronized void placeCard(int card, int slot) {
+    public void placeCard(int card, int slot) {
         try {
             Thread.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
-        env.ui.placeCard(card, slot);
 
+        synchronized (slotLocks[slot]) {
+            long locked = System.nanoTime();
+            INTS.setVolatile(cardToSlot, card, slot);
+            INTS.setVolatile(slotToCard, slot, card);
+            setBit(occupied, slot / Long.SIZE, 1L << slot);
+            env.ui.placeCard(card, slot);
+            lockHoldNanos.record(System.nanoTime() - locked);
+        }
     }
 
     /**
      * Removes a card from a grid slot on the table.
      * @param slot - the slot from which to remove the card.
      */
-    public synchronized void removeCard(int slot) {
+    public void removeCard(int slot) {
+        removeCard(slot, null);
+    }
+
+    /**
+     * Removes a card from a grid slot on the table, together with the tokens on it. Only the players that have a
+     * token on the slot are visited (through the reverse index of the tokens).
+     * @param slot     - the slot from which to remove the card.
+     * @param affected - filled with the ids of the players whose tokens were removed (may be null).
+     * @return         - the number of players whose tokens were removed.
+     */
+    public int removeCard(int slot, int[] affected) {
         try {
             Thread.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
-        //remove tokens from the card
-        for (int i =0 ; i<numOfPlayers ; i++){
-            removeToken(i,slot);
-        }
+        synchronized (slotLocks[slot]) {
+            long locked = System.nanoTime();
+            //remove tokens from the card
+            int count = 0;
+            for (int w = 0; w < playerWords; ++w) {
+                for (long players = slotTokens.getAndSet(slot * playerWords + w, 0); players != 0; players &= players - 1) {
+                    int player = w * Long.SIZE + Long.numberOfTrailingZeros(players);
+                    clearBit(tokens, player * slotWords + slot / Long.SIZE, 1L << slot);
+                    env.ui.removeToken(player, slot);
+                    if (affected != null)
+                        affected[count] = player;
+                    ++count;
+                }
+            }
 
-        //update the grid
-        if (slotToCard[slot]!= null)
-            cardToSlot[slotToCard[slot]]= null;
-        slotToCard[slot]=null;
-        env.ui.removeCard(slot);
-        
+            //update the grid
+            int card = cardAt(slot);
+            if (card != EMPTY)
+                INTS.setVolatile(cardToSlot, card, EMPTY);
+            INTS.setVolatile(slotToCard, slot, EMPTY);
+            clearBit(occupied, slot / Long.SIZE, 1L << slot);
+            env.ui.removeCard(slot);
+            lockHoldNanos.record(System.nanoTime() - locked);
+            return count;
+        }
     }
 
     /**
      * Places a player token on a grid slot.
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
+     * @return       - true iff the token was placed (i.e. the slot has a card and the player had no token on it).
      */
-    public synchronized void placeToken(int player, int slot) {
-        
-            tokens[player][slot] = true;
-            env.ui.placeToken(player, slot);
-        
+    public boolean placeToken(int player, int slot) {
+        synchronized (slotLocks[slot]) {
+            long locked = System.nanoTime();
+            boolean placed = cardAt(slot) != EMPTY && setBit(tokens, player * slotWords + slot / Long.SIZE, 1L << slot);
+            if (placed) {
+                setBit(slotTokens, slot * playerWords + player / Long.SIZE, 1L << player);
+                env.ui.placeToken(player, slot);
+            }
+            lockHoldNanos.record(System.nanoTime() - locked);
+            return placed;
+        }
     }
 
     /**
@@ -156,20 +274,41 @@ public class Table {
      * @param slot   - the slot from which to remove the token.
      * @return       - true iff a token was successfully removed.
      */
-    public synchronized boolean removeToken(int player, int slot) {
-
-        boolean removed = false;
-
-         if (tokens[player][slot] == true){
-            tokens[player][slot] = false;
-            removed = true;
-         env.ui.removeToken(player, slot);
-         }
-         return removed;
+    public boolean removeToken(int player, int slot) {
+        synchronized (slotLocks[slot]) {
+            long locked = System.nanoTime();
+            boolean removed = clearBit(tokens, player * slotWords + slot / Long.SIZE, 1L << slot);
+            if (removed) {
+                clearBit(slotTokens, slot * playerWords + player / Long.SIZE, 1L << player);
+                env.ui.removeToken(player, slot);
+            }
+            lockHoldNanos.record(System.nanoTime() - locked);
+            return removed;
         }
+    }
 
-    public boolean[][] getTokens(){
-        return tokens;
+    /**
+     * Atomically sets a bit in a word of a bitmask.
+     * @return - true iff the bit was not set before.
+     */
+    private static boolean setBit(AtomicLongArray words, int index, long bit) {
+        long word;
+        do {
+            word = words.get(index);
+        } while (!words.compareAndSet(index, word, word | bit));
+        return (word & bit) == 0;
+    }
+
+    /**
+     * Atomically clears a bit in a word of a bitmask.
+     * @return - true iff the bit was set before.
+     */
+    private static boolean clearBit(AtomicLongArray words, int index, long bit) {
+        long word;
+        do {
+            word = words.get(index);
+        } while (!words.compareAndSet(index, word, word & ~bit));
+        return (word & bit) != 0;
     }
 
     public void tableIsReady (boolean Isready){
@@ -0,0 +1,121 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameEventLogTest {
+
+    /**
+     * Counts the messages it is asked to log (i.e. the messages that were formatted).
+     */
+    private static class CountingLogger extends Logger {
+
+        int messages;
+
+        CountingLogger() {
+            super("", null);
+        }
+
+        @Override
+        public void severe(String msg) {
+            messages++;
+        }
+    }
+
+    /**
+     * @return - the lines the event log printer prints for a file, without their timestamps.
+     */
+    private static List<String> print(Path file) throws IOException {
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(printed, true));
+        try {
+            GameEventLog.main(new String[]{file.toString()});
+        } finally {
+            System.setOut(out);
+        }
+        return printed.toString().lines().map(line -> line.substring(line.indexOf("] ") + 2)).toList();
+    }
+
+    private static UserInterfaceDecorator decorator(Logger logger, GameEventLog events) {
+        Util util = new UtilImpl(new Config(new UtilImplTest.MockLogger(), new Properties()));
+        return new UserInterfaceDecorator(logger, util, new UserInterfaceHeadless(), events);
+    }
+
+    @Test
+    void record_RoundTripsThroughPrinter(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("game.events");
+        GameEventLog events = new GameEventLog(new UtilImplTest.MockLogger(), file, 16);
+        events.record(GameEventLog.Type.PLACE_CARD, 3, 42);
+        events.record(GameEventLog.Type.PLACE_TOKEN, 2, 3);
+        events.record(GameEventLog.Type.COUNTDOWN, 1, 5000);
+        events.record(GameEventLog.Type.WINNER, 2, 0);
+        events.close();
+
+        assertEquals(List.of("placing card 42 in slot 3", "player 2 placing token on slot 3",
+                "updating countdown to 5000 (warn: 1)", "announcing winner: player 2"), print(file));
+    }
+
+    @Test
+    void decorator_RecordsOnlyWhenLoggable(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("game.events");
+        GameEventLog events = new GameEventLog(new UtilImplTest.MockLogger(), file, 16);
+        CountingLogger logger = new CountingLogger();
+
+        logger.setLevel(Level.OFF);
+        UserInterfaceDecorator quiet = decorator(logger, events);
+        quiet.placeCard(5, 1);
+        quiet.setScore(0, 1);
+        UserInterfaceDecorator text = decorator(logger, null);
+        text.placeCard(5, 1);
+        text.setScore(0, 1);
+        assertEquals(0, logger.messages);
+
+        logger.setLevel(Level.ALL);
+        quiet.placeCard(7, 2);
+        assertEquals(0, logger.messages);
+        text.placeCard(7, 2);
+        assertEquals(1, logger.messages);
+        events.close();
+
+        assertEquals(List.of("placing card 7 in slot 2"), print(file));
+    }
+
+    @Test
+    void record_CountsDroppedEventsWhenFull(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("game.events");
+        GameEventLog events = new GameEventLog(new UtilImplTest.MockLogger(), file, 4);
+        int recorded = 100_000;
+        for (int i = 0; i < recorded; i++)
+            events.record(GameEventLog.Type.ELAPSED, 0, i);
+        events.close();
+
+        long written = 0;
+        long dropped = 0;
+        long last = -1;
+        for (String line : print(file)) {
+            if (line.endsWith("(buffer full)")) {
+                dropped += Long.parseLong(line.substring(0, line.indexOf(' ')));
+            } else {
+                long elapsed = Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+                assertTrue(elapsed > last, "events out of order");
+                last = elapsed;
+                written++;
+            }
+        }
+        assertTrue(dropped > 0);
+        assertEquals(recorded, written + dropped);
+    }
+}
@@ -0,0 +1,79 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameServerTest {
+
+    @Test
+    void tablePropertiesOverrideOnlyTheirTable() {
+
+        Properties properties = new Properties();
+        properties.setProperty("ComputerPlayers", "2");
+        properties.setProperty("Rows", "3");
+        properties.setProperty("Table2.ComputerPlayers", "4");
+        properties.setProperty("Table12.Rows", "5");
+        properties.setProperty("Table2.Hints", "True");
+
+        Properties table2 = GameServer.tableProperties(properties, 2);
+        assertEquals("4", table2.getProperty("ComputerPlayers"));
+        assertEquals("3", table2.getProperty("Rows"));
+        assertEquals("True", table2.getProperty("Hints"));
+        assertEquals(3, table2.size());
+
+        Properties table12 = GameServer.tableProperties(properties, 12);
+        assertEquals("2", table12.getProperty("ComputerPlayers"));
+        assertEquals("5", table12.getProperty("Rows"));
+        assertNull(table12.getProperty("Hints"));
+
+        Properties table1 = GameServer.tableProperties(properties, 1);
+        assertEquals("2", table1.getProperty("ComputerPlayers"));
+        assertEquals("3", table1.getProperty("Rows"));
+        assertEquals(2, table1.size());
+    }
+
+    @Test
+    void run_EveryTableWritesItsOwnBinaryEventLog(@TempDir Path dir) throws Exception {
+
+        Properties properties = new Properties();
+        properties.setProperty("Tables", "2");
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", "2");
+        properties.setProperty("LogLevel", "ALL");
+        properties.setProperty("EventLog", "binary");
+        properties.setProperty("Table2.EventLog", "text");
+        properties.setProperty("MetricsJmx", "False");
+        properties.setProperty("MetricsDumpSeconds", "0");
+        properties.setProperty("TableDelaySeconds", "0");
+        String logName = dir.resolve("server").toString();
+        GameServer server = new GameServer(new UtilImplTest.MockLogger(), properties,
+                table -> new UserInterfaceHeadless(), new Metrics(), logName);
+        Thread thread = new Thread(server::run);
+        thread.start();
+        Thread.sleep(200);
+        server.terminate();
+        thread.join(5000);
+
+        // table 1 logged its deal (an EOFException means it did not)
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(Path.of(logName + ".table1.events")))) {
+            in.readInt(); // magic
+            int type;
+            do {
+                in.readLong(); // time
+                type = in.readByte();
+                in.readLong(); // a
+                in.readLong(); // b
+            } while (type != GameEventLog.Type.PLACE_CARD.ordinal());
+        }
+        assertTrue(Files.notExists(Path.of(logName + ".table2.events")));
+    }
+}
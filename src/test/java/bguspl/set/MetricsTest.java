@@ -0,0 +1,66 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsTest {
+
+    @Test
+    void histogramIsExactForSmallValues() {
+        Metrics.Histogram histogram = new Metrics().histogram("small");
+        for (int value = 1; value <= 20; value++)
+            histogram.record(value);
+
+        assertEquals(20, histogram.count());
+        assertEquals(10, histogram.percentile(50));
+        assertEquals(20, histogram.percentile(100));
+        assertEquals(10.5, histogram.mean());
+    }
+
+    @Test
+    void histogramPercentilesAreWithinTheRelativeError() {
+        Metrics.Histogram histogram = new Metrics().histogram("large");
+        for (long value = 1; value <= 1_000_000; value++)
+            histogram.record(value * 1000);
+
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9}) {
+            double expected = percentile / 100 * 1_000_000_000L;
+            double actual = histogram.percentile(percentile);
+            assertTrue(Math.abs(actual - expected) <= expected / 16, percentile + ": " + actual + " vs " + expected);
+        }
+        assertEquals(1_000_000_000L, histogram.max());
+    }
+
+    @Test
+    void namedMetricsAreShared() {
+        Metrics metrics = new Metrics();
+        metrics.counter("claims").increment();
+        metrics.counter("claims").increment();
+        metrics.gauge("depth", () -> 7);
+
+        assertEquals(2, metrics.counter("claims").get());
+        assertTrue(metrics.toString().contains("depth: 7"));
+    }
+
+    @Test
+    void scopesShareCountersButNotGauges() {
+        Metrics metrics = new Metrics();
+        Metrics table1 = metrics.scope("table1.");
+        Metrics table2 = metrics.scope("table2.");
+        table1.counter("claims").increment();
+        table2.counter("claims").increment();
+        table1.gauge("depth", () -> 1);
+        table2.gauge("depth", () -> 2);
+
+        assertEquals(2, metrics.counter("claims").get());
+        assertTrue(metrics.toString().contains("table1.depth: 1"));
+        assertTrue(metrics.toString().contains("table2.depth: 2"));
+
+        table1.removeGauges();
+        assertFalse(metrics.toString().contains("table1.depth"));
+        assertTrue(metrics.toString().contains("table2.depth: 2"));
+    }
+}
@@ -0,0 +1,246 @@
+package bguspl.set;
+
+import bguspl.set.ex.Table;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Plays the protocol against a one-table server over the loopback interface.
+ */
+class NetworkServerTest {
+
+    private NetworkServer network;
+    private GameServer server;
+    private Thread serverThread;
+    private volatile Game game;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("Tables", "1");
+        properties.setProperty("HumanPlayers", "2");
+        properties.setProperty("ComputerPlayers", "0");
+        properties.setProperty("NetworkPort", "0");
+        properties.setProperty("MetricsJmx", "False");
+        properties.setProperty("MetricsDumpSeconds", "0");
+        properties.setProperty("TableDelaySeconds", "0");
+        properties.setProperty("TurnTimeoutSeconds", "60");
+        Logger logger = new UtilImplTest.MockLogger();
+        Config config = new Config(logger, properties);
+        Metrics metrics = new Metrics();
+        network = new NetworkServer(logger, config, metrics);
+        network.start();
+
+        CountDownLatch hosted = new CountDownLatch(1);
+        server = new GameServer(logger, properties, new GameServer.Host() {
+            @Override
+            public UserInterface userInterface(int table) {
+                return network.userInterface(table);
+            }
+
+            @Override
+            public void hosted(int table, Game created) {
+                network.hosted(table, created);
+                game = created;
+                hosted.countDown();
+            }
+        }, metrics, null);
+        serverThread = new Thread(server::run, "server");
+        serverThread.start();
+        assertTrue(hosted.await(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (game.table().countCards() < config.tableSize && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(config.tableSize, game.table().countCards());
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        server.terminate();
+        serverThread.join(5000);
+        network.close();
+    }
+
+    /**
+     * A blocking connection that reads and writes whole frames.
+     */
+    private class Client implements AutoCloseable {
+
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Client() throws IOException {
+            socket = new Socket("localhost", network.port());
+            socket.setSoTimeout(5000);
+            in = new DataInputStream(socket.getInputStream());
+            out = new DataOutputStream(socket.getOutputStream());
+        }
+
+        void send(byte kind, int... fields) throws IOException {
+            out.writeInt(1 + fields.length * Integer.BYTES);
+            out.writeByte(kind);
+            for (int field : fields)
+                out.writeInt(field);
+            out.flush();
+        }
+
+        /**
+         * @return - the kind of the next frame followed by its ints (the records of an EVENTS frame are returned as
+         *           type, a, b triples after the count).
+         */
+        int[] receive() throws IOException {
+            int length = in.readInt();
+            byte kind = in.readByte();
+            if (kind == NetworkServer.EVENTS) {
+                int count = in.readInt();
+                assertEquals(Integer.BYTES + count * UserInterfaceBroadcast.EVENT_BYTES, length - 1);
+                int[] frame = new int[2 + 3 * count];
+                frame[0] = kind;
+                frame[1] = count;
+                for (int i = 0; i < count; i++) {
+                    frame[2 + 3 * i] = in.readByte();
+                    frame[3 + 3 * i] = in.readInt();
+                    frame[4 + 3 * i] = in.readInt();
+                }
+                return frame;
+            }
+            int[] frame = new int[1 + (length - 1) / Integer.BYTES];
+            frame[0] = kind;
+            for (int i = 1; i < frame.length; i++)
+                frame[i] = in.readInt();
+            return frame;
+        }
+
+        void assertRejected(int reason) throws IOException {
+            assertArrayEquals(new int[]{NetworkServer.REJECT, reason}, receive());
+        }
+
+        void assertDisconnected() {
+            assertThrows(EOFException.class, () -> {
+                while (true) receive();
+            });
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    private static boolean hasRecord(int[] frame, GameEventLog.Type type, int a, int b) {
+        for (int i = 2; i < frame.length; i += 3)
+            if (frame[i] == type.ordinal() && frame[i + 1] == a && frame[i + 2] == b)
+                return true;
+        return false;
+    }
+
+    @Test
+    void join_WelcomesWithSnapshotAndTakesKeys() throws Exception {
+        try (Client client = new Client()) {
+            client.send(NetworkServer.JOIN, 1, 0);
+            Config config = game.env().config;
+            assertArrayEquals(new int[]{NetworkServer.WELCOME, 1, 0, config.rows, config.columns, config.players},
+                    client.receive());
+
+            int[] snapshot = client.receive();
+            assertEquals(NetworkServer.EVENTS, snapshot[0]);
+            for (int slot = 0; slot < config.tableSize; slot++) {
+                int card = game.table().cardAt(slot);
+                if (card != Table.EMPTY)
+                    assertTrue(hasRecord(snapshot, GameEventLog.Type.PLACE_CARD, slot, card), "slot " + slot);
+            }
+            for (int player = 0; player < config.players; player++)
+                assertTrue(hasRecord(snapshot, GameEventLog.Type.SCORE, player + 1, 0));
+
+            // the press is rejected while the dealer is still getting the table ready, so it is repeated until the
+            // token is placed
+            long deadline = System.currentTimeMillis() + 5000;
+            long repeat = 0;
+            int[] frame;
+            do {
+                assertTrue(System.currentTimeMillis() < deadline, "no token placed");
+                if (System.currentTimeMillis() >= repeat && !game.table().hasToken(0, 3)) {
+                    client.send(NetworkServer.KEY, 3);
+                    repeat = System.currentTimeMillis() + 200;
+                }
+                frame = client.receive();
+            } while (!hasRecord(frame, GameEventLog.Type.PLACE_TOKEN, 1, 3));
+        }
+    }
+
+    @Test
+    void join_RejectsMissingTableAndSecondJoin() throws Exception {
+        try (Client client = new Client()) {
+            client.send(NetworkServer.JOIN, 2, 0);
+            client.assertRejected(NetworkServer.NO_TABLE);
+
+            client.send(NetworkServer.JOIN, 1, -1);
+            assertEquals(NetworkServer.WELCOME, client.receive()[0]);
+            client.send(NetworkServer.JOIN, 1, 1);
+            int[] frame;
+            do {
+                frame = client.receive();
+            } while (frame[0] == NetworkServer.EVENTS);
+            assertArrayEquals(new int[]{NetworkServer.REJECT, NetworkServer.NO_TABLE}, frame);
+        }
+    }
+
+    @Test
+    void join_RejectsPlayersThatAreNotHuman() throws Exception {
+        try (Client client = new Client()) {
+            client.send(NetworkServer.JOIN, 1, 2);
+            client.assertRejected(NetworkServer.NO_PLAYER);
+            client.send(NetworkServer.JOIN, 1, -2);
+            client.assertRejected(NetworkServer.NO_PLAYER);
+        }
+    }
+
+    @Test
+    void join_RejectsTakenPlayer() throws Exception {
+        try (Client first = new Client(); Client second = new Client()) {
+            first.send(NetworkServer.JOIN, 1, 0);
+            assertEquals(NetworkServer.WELCOME, first.receive()[0]);
+            second.send(NetworkServer.JOIN, 1, 0);
+            second.assertRejected(NetworkServer.PLAYER_TAKEN);
+        }
+    }
+
+    @Test
+    void read_DisconnectsOversizedFrame() throws Exception {
+        try (Client client = new Client()) {
+            client.out.writeInt(1000);
+            client.out.flush();
+            client.assertDisconnected();
+        }
+    }
+
+    @Test
+    void read_DisconnectsUnknownKind() throws Exception {
+        try (Client client = new Client()) {
+            client.send((byte) 9, 1);
+            client.assertDisconnected();
+        }
+    }
+
+    @Test
+    void read_DisconnectsShortJoin() throws Exception {
+        try (Client client = new Client()) {
+            client.send(NetworkServer.JOIN, 1);
+            client.assertDisconnected();
+        }
+    }
+}
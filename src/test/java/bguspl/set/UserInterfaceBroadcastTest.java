@@ -0,0 +1,78 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserInterfaceBroadcastTest {
+
+    private UserInterfaceBroadcast ui;
+
+    @BeforeEach
+    void setUp() {
+        ui = new UserInterfaceBroadcast();
+    }
+
+    /**
+     * Checks the header of an EVENTS frame and leaves the buffer at its first record.
+     */
+    private static void assertEvents(ByteBuffer frame, int count) {
+        assertEquals(Integer.BYTES + 1 + Integer.BYTES + count * UserInterfaceBroadcast.EVENT_BYTES, frame.remaining());
+        assertEquals(frame.remaining() - Integer.BYTES, frame.getInt());
+        assertEquals(NetworkServer.EVENTS, frame.get());
+        assertEquals(count, frame.getInt());
+    }
+
+    private static void assertRecord(ByteBuffer frame, GameEventLog.Type type, int a, int b) {
+        assertEquals(type.ordinal(), frame.get());
+        assertEquals(a, frame.getInt());
+        assertEquals(b, frame.getInt());
+    }
+
+    @Test
+    void takeFrame_NullWhenNoEvents() {
+        assertNull(ui.takeFrame());
+        ui.placeCard(7, 2);
+        assertNotNull(ui.takeFrame());
+        assertNull(ui.takeFrame());
+    }
+
+    @Test
+    void takeFrame_MergesTimerUpdatesOfTick() {
+        ui.setCountdown(3000, false);
+        ui.placeToken(0, 4);
+        ui.setCountdown(2000, false);
+        ui.setScore(1, 2);
+        ui.setCountdown(1000, true);
+
+        ByteBuffer frame = ui.takeFrame();
+        assertEvents(frame, 3);
+        assertRecord(frame, GameEventLog.Type.COUNTDOWN, 1, 1000);
+        assertRecord(frame, GameEventLog.Type.PLACE_TOKEN, 1, 4);
+        assertRecord(frame, GameEventLog.Type.SCORE, 2, 2);
+        assertFalse(frame.hasRemaining());
+
+        ui.setCountdown(500, true);
+        frame = ui.takeFrame();
+        assertEvents(frame, 1);
+        assertRecord(frame, GameEventLog.Type.COUNTDOWN, 1, 500);
+    }
+
+    @Test
+    void takeFrame_GrowsBufferForManyEvents() {
+        int events = 200;
+        for (int i = 0; i < events; i++)
+            ui.placeCard(i, i % 12);
+        ui.setElapsed(42);
+
+        ByteBuffer frame = ui.takeFrame();
+        assertEvents(frame, events + 1);
+        for (int i = 0; i < events; i++)
+            assertRecord(frame, GameEventLog.Type.PLACE_CARD, i % 12, i);
+        assertRecord(frame, GameEventLog.Type.ELAPSED, 0, 42);
+        assertFalse(frame.hasRemaining());
+    }
+}
@@ -0,0 +1,203 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilImplTest {
+
+    private static UtilImpl util(int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        return new UtilImpl(new Config(new MockLogger(), properties));
+    }
+
+    private static List<Integer> deck(int size) {
+        return IntStream.range(0, size).boxed().collect(Collectors.toList());
+    }
+
+    private static void assertSorted(int[] cards) {
+        int[] sorted = Arrays.copyOf(cards, cards.length);
+        Arrays.sort(sorted);
+        assertTrue(Arrays.equals(sorted, cards));
+    }
+
+    @Test
+    void testSet_MatchesFeatureDefinition() {
+        UtilImpl util = util(3, 4);
+        for (int a = 0; a < 81; ++a)
+            for (int b = a + 1; b < 81; ++b)
+                for (int c = b + 1; c < 81; ++c) {
+                    int[][] features = util.cardsToFeatures(new int[]{a, b, c});
+                    boolean expected = true;
+                    for (int i = 0; i < 4; ++i)
+                        expected &= (features[0][i] + features[1][i] + features[2][i]) % 3 == 0;
+                    assertEquals(expected, util.testSet(new int[]{a, b, c}));
+                }
+    }
+
+    @Test
+    void testSet_FeaturesThatDoNotPack() {
+        // 3 * 22 feature bits do not fit in a long
+        UtilImpl util = util(3, 22);
+        assertTrue(util.testSet(new int[]{0, 1, 2}));
+        assertFalse(util.testSet(new int[]{0, 1, 3}));
+    }
+
+    @Test
+    void findSets_FullDeckHasAllSets() {
+        UtilImpl util = util(3, 4);
+        List<int[]> sets = util.findSets(deck(81), Integer.MAX_VALUE);
+
+        // every pair of cards completes to exactly one set: 81 * 80 / 6
+        assertEquals(1080, sets.size());
+        for (int[] set : sets) {
+            assertTrue(util.testSet(set));
+            assertSorted(set);
+        }
+    }
+
+    @Test
+    void findSets_StopsAtCount() {
+        assertEquals(5, util(3, 4).findSets(deck(81), 5).size());
+    }
+
+    @Test
+    void findSets_LargeDeckComputesThirdCardOnDemand() {
+        // 3^7 cards are beyond the precomputed table
+        UtilImpl util = util(3, 7);
+        List<int[]> sets = util.findSets(deck(30), Integer.MAX_VALUE);
+        sets.forEach(set -> assertTrue(util.testSet(set)));
+
+        int expected = 0;
+        for (int a = 0; a < 30; ++a)
+            for (int b = a + 1; b < 30; ++b)
+                for (int c = b + 1; c < 30; ++c)
+                    if (util.testSet(new int[]{a, b, c})) ++expected;
+        assertEquals(expected, sets.size());
+    }
+
+    @Test
+    void findSets_OtherFeatureSize() {
+        UtilImpl util = util(4, 2);
+        List<int[]> sets = util.findSets(deck(16), Integer.MAX_VALUE);
+        sets.forEach(set -> assertTrue(util.testSet(set)));
+        // 4 rows, 4 columns and 4! permutations of all-different
+        assertEquals(32, sets.size());
+    }
+
+    @Test
+    void findSets_OtherFeatureSizesMatchAllCombinations() {
+        for (int[] variant : new int[][]{{4, 3}, {5, 2}}) {
+            UtilImpl util = util(variant[0], variant[1]);
+            int n = (int) Math.pow(variant[0], variant[1]);
+            List<int[]> sets = util.findSets(deck(n), Integer.MAX_VALUE);
+            sets.forEach(set -> {
+                assertTrue(util.testSet(set));
+                assertSorted(set);
+            });
+            assertEquals(countSets(util, n, variant[0]), sets.size());
+        }
+    }
+
+    @Test
+    void testSet_OtherFeatureSizeThatDoesNotPackMatchesFeatureDefinition() {
+        // 4 * 17 feature bits do not fit in a long
+        UtilImpl util = util(4, 17);
+        Random random = new Random(17);
+        for (int i = 0; i < 10000; ++i) {
+            int[] cards = random.ints(4, 0, 1 << 20).toArray();
+            if (random.nextBoolean()) // make the last feature values of a legal set more likely
+                cards = new int[]{0, 1 + cards[1] * 4, 2 + cards[1] * 4, 3 + cards[3] % 2 * 4};
+            int[][] features = util.cardsToFeatures(cards);
+            boolean expected = true;
+            for (int f = 0; f < 17; ++f) {
+                int[] values = {features[0][f], features[1][f], features[2][f], features[3][f]};
+                long distinct = Arrays.stream(values).distinct().count();
+                expected &= distinct == 1 || distinct == 4;
+            }
+            assertEquals(expected, util.testSet(cards));
+        }
+    }
+
+    @Test
+    void findSetsParallel_FindsTheSameSets() {
+        for (int[] variant : new int[][]{{3, 6}, {4, 4}}) {
+            UtilImpl util = util(variant[0], variant[1]);
+            List<Integer> deck = deck((int) Math.pow(variant[0], variant[1]));
+            Set<String> expected = util.findSets(deck, Integer.MAX_VALUE).stream()
+                    .map(Arrays::toString).collect(Collectors.toSet());
+
+            Set<String> found = ConcurrentHashMap.newKeySet();
+            int count = util.findSetsParallel(deck, Integer.MAX_VALUE, set -> assertTrue(found.add(Arrays.toString(set))));
+            assertEquals(expected.size(), count);
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    void findSetsParallel_StopsAtCount() {
+        UtilImpl util = util(3, 6);
+        AtomicInteger calls = new AtomicInteger();
+        assertEquals(10, util.findSetsParallel(deck(729), 10, set -> calls.incrementAndGet()));
+        assertEquals(10, calls.get());
+    }
+
+    @Test
+    void streamSets_MatchesFindSets() {
+        for (int[] variant : new int[][]{{3, 6}, {4, 4}, {2, 5}}) {
+            UtilImpl util = util(variant[0], variant[1]);
+            List<Integer> deck = deck((int) Math.pow(variant[0], variant[1]));
+            Set<String> expected = util.findSets(deck, Integer.MAX_VALUE).stream()
+                    .map(Arrays::toString).collect(Collectors.toSet());
+            int[] cards = deck.stream().mapToInt(Integer::intValue).toArray();
+
+            assertEquals(expected, util.streamSets(cards, true).map(Arrays::toString).collect(Collectors.toSet()));
+            assertEquals(expected, util.streamSets(cards, false).parallel().map(Arrays::toString).collect(Collectors.toSet()));
+            assertEquals(expected.size(), util.streamSets(cards, true).parallel().count());
+        }
+    }
+
+    @Test
+    void streamSets_ShortCircuits() {
+        UtilImpl util = util(3, 6);
+        int[] cards = IntStream.range(0, 729).toArray();
+        AtomicInteger calls = new AtomicInteger();
+        assertTrue(util.streamSets(cards, true).peek(set -> calls.incrementAndGet()).anyMatch(set -> true));
+        assertEquals(1, calls.get());
+        assertEquals(7, util.streamSets(cards, false).limit(7).count());
+    }
+
+    private static int countSets(UtilImpl util, int n, int k) {
+        int count = 0;
+        int[] combination = IntStream.range(0, k).toArray();
+        while (combination[k - 1] < n) {
+            if (util.testSet(combination.clone())) ++count;
+            int t = k - 1;
+            while (t != 0 && combination[t] == n - k + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < k; i++) combination[i] = combination[i - 1] + 1;
+        }
+        return count;
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.Game;
+import bguspl.set.Metrics;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DealerTest {
+
+    /**
+     * A seed whose first two deals have no legal set (most deals of 5 features of size 5 have none).
+     */
+    private static final long DEAD_DEAL_SEED = 1;
+
+    private Config config;
+    private Env env;
+    private Metrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", "5");
+        properties.put("FeatureCount", "5");
+        properties.put("HumanPlayers", "1");
+        properties.put("ComputerPlayers", "0");
+        properties.put("TurnTimeoutSeconds", "0.1");
+        properties.put("Headless", "True");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        config = new Config(logger, properties);
+        metrics = new Metrics();
+        env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config), metrics);
+    }
+
+    @Test
+    void run_DeadTableIsRedealtOnlyOncePerTurn() throws InterruptedException {
+
+        Deck deck = new Deck(config.deckSize, new Random(DEAD_DEAL_SEED));
+        for (int deal = 0; deal < 2; deal++) {
+            int[] cards = new int[config.tableSize];
+            for (int i = 0; i < cards.length; i++)
+                cards[i] = deck.draw();
+            assertFalse(env.util.streamSets(cards, true).findAny().isPresent());
+        }
+
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players, DEAD_DEAL_SEED, null);
+        players[0] = new Player(env, dealer, table, 0, true);
+        Thread thread = new Thread(dealer);
+        thread.start();
+        Thread.sleep(1000);
+        dealer.terminate();
+        thread.join();
+
+        // one redeal right away, then one per turn timeout (a busy loop would redeal thousands of times)
+        long reshuffles = metrics.counter("dealer.reshuffles").get();
+        assertTrue(reshuffles >= 2 && reshuffles <= 1 + 1000 / 100 + 2, "reshuffles: " + reshuffles);
+    }
+
+    /**
+     * Runs a game (or a dealer) on a new thread, calls stop right after starting it and waits for it to end.
+     *
+     * @return - what the thread threw (null if nothing).
+     */
+    private static Throwable runAndStop(Runnable game, Runnable stop) throws InterruptedException {
+        Thread thread = new Thread(game);
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        thread.setUncaughtExceptionHandler((t, e) -> thrown.set(e));
+        thread.start();
+        stop.run();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        return thrown.get();
+    }
+
+    @Test
+    void run_TerminatedBeforeStartStopsEveryPlayer() throws InterruptedException {
+
+        Table table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players, DEAD_DEAL_SEED, null);
+        players[0] = new Player(env, dealer, table, 0, true);
+        dealer.terminate(); // before the dealer thread runs, as a table closed right after it is started
+        assertNull(runAndStop(dealer, () -> {}));
+    }
+
+    @Test
+    void close_RightAfterStartStopsTheGame() throws InterruptedException {
+
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "1");
+        properties.put("ComputerPlayers", "3");
+        properties.put("Headless", "True");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config gameConfig = new Config(logger, properties);
+        for (int i = 0; i < 20; i++) {
+            Game game = new Game(logger, gameConfig, new UtilImpl(gameConfig), new Metrics(), i, null,
+                    g -> new TableTest.MockUserInterface());
+            assertNull(runAndStop(game, game::close));
+        }
+    }
+}
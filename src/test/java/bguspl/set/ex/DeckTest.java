@@ -0,0 +1,57 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeckTest {
+
+    private static final int DECK_SIZE = 81;
+
+    @Test
+    void draw_UniqueCardsUntilEmpty() {
+        Deck deck = new Deck(DECK_SIZE, new Random(1));
+        Set<Integer> drawn = new HashSet<>();
+        for (int i = 0; i < DECK_SIZE; ++i) {
+            assertFalse(deck.isEmpty());
+            int card = deck.draw();
+            assertTrue(card >= 0 && card < DECK_SIZE);
+            assertTrue(drawn.add(card), "card " + card + " drawn twice");
+            assertEquals(DECK_SIZE - i - 1, deck.size());
+        }
+        assertTrue(deck.isEmpty());
+    }
+
+    @Test
+    void addAll_ReturnedCardsCanBeDrawnAgain() {
+        Deck deck = new Deck(DECK_SIZE, new Random(2));
+        int[] returned = new int[DECK_SIZE];
+        for (int i = 0; i < DECK_SIZE; ++i)
+            returned[i] = deck.draw();
+
+        deck.addAll(returned, 3);
+        assertEquals(3, deck.size());
+        Set<Integer> drawn = new HashSet<>();
+        while (!deck.isEmpty())
+            drawn.add(deck.draw());
+        assertEquals(Set.of(returned[0], returned[1], returned[2]), drawn);
+    }
+
+    @Test
+    void draw_SameSeedSameOrder() {
+        Deck first = new Deck(DECK_SIZE, new Random(42));
+        Deck second = new Deck(DECK_SIZE, new Random(42));
+        Deck other = new Deck(DECK_SIZE, new Random(43));
+        boolean differs = false;
+        while (!first.isEmpty()) {
+            int card = first.draw();
+            assertEquals(card, second.draw());
+            differs |= card != other.draw();
+        }
+        assertTrue(differs);
+    }
+}
@@ -0,0 +1,56 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Game;
+import bguspl.set.Metrics;
+import bguspl.set.Tournament;
+import bguspl.set.UserInterfaceHeadless;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameReplayTest {
+
+    private static final long SEED = 42;
+
+    @Test
+    void replay_EndsLikeTheRecordedGame(@TempDir Path directory) throws Exception {
+
+        Properties properties = new Properties();
+        properties.put("FeatureCount", "3");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "3");
+        properties.put("ComputerStrategies", "oracle,human,random");
+        properties.put("HumanReactionSeconds", "0.005");
+        properties.put("HumanReactionDeviationSeconds", "0.001");
+        properties.put("HumanKeySeconds", "0.001");
+        properties.put("TurnTimeoutSeconds", "0.2");
+        properties.put("PointFreezeSeconds", "0.01");
+        properties.put("PenaltyFreezeSeconds", "0.01");
+        properties.put("Headless", "True");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+
+        Path file = directory.resolve("game.journal");
+        GameJournal journal = new GameJournal(logger, file, config, SEED);
+        Game game = new Game(logger, config, new UtilImpl(config), new Metrics(), SEED, journal, g -> new UserInterfaceHeadless());
+        game.run();
+        journal.close();
+        Tournament.Result recorded = game.result();
+
+        GameJournal.Recording recording = GameJournal.read(file);
+        assertArrayEquals(recorded.scores, recording.scores);
+        assertTrue(recording.steps.stream().anyMatch(step -> step.type == GameJournal.Step.BATCH));
+
+        GameReplay replay = new GameReplay(logger, properties, recording);
+        String report = replay.run();
+        assertTrue(report.startsWith("replayed"), report);
+        assertArrayEquals(recorded.winners, replay.winners());
+    }
+}
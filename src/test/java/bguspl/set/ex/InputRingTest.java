@@ -0,0 +1,79 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InputRingTest {
+
+    @Test
+    void offer_DropNewestKeepsFirstPresses() throws InterruptedException {
+        InputRing ring = new InputRing(2, InputRing.Policy.DROP_NEWEST);
+        assertTrue(ring.offer(1));
+        assertTrue(ring.offer(2));
+        assertFalse(ring.offer(3));
+
+        assertEquals(1, ring.dropped());
+        assertEquals(1, ring.take());
+        assertTrue(ring.offer(4));
+        assertEquals(2, ring.take());
+        assertEquals(4, ring.take());
+    }
+
+    @Test
+    void offer_DropOldestKeepsLastPresses() throws InterruptedException {
+        InputRing ring = new InputRing(2, InputRing.Policy.DROP_OLDEST);
+        for (int slot = 1; slot <= 5; slot++)
+            assertTrue(ring.offer(slot));
+
+        assertEquals(3, ring.dropped());
+        assertEquals(4, ring.take());
+        assertEquals(5, ring.take());
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    void cancel_CoalescedAndCancelledPressesSkipped() throws InterruptedException {
+        InputRing ring = new InputRing(4, InputRing.Policy.COALESCE);
+        ring.offer(1);
+        ring.offer(2);
+        ring.offer(1); // cancels the first press of 1
+        ring.offer(3);
+        ring.offer(4);
+        ring.cancel(3);
+
+        assertEquals(1, ring.coalesced());
+        assertEquals(2, ring.take());
+        assertEquals(4, ring.take());
+    }
+
+    @Test
+    void take_WaitsForProducer() throws InterruptedException {
+        InputRing ring = new InputRing(1, InputRing.Policy.DROP_NEWEST);
+        Thread producer = new Thread(() -> {
+            for (int slot = 0; slot < 1000; slot++)
+                while (!ring.offer(slot))
+                    Thread.yield();
+        });
+        producer.start();
+        for (int slot = 0; slot < 1000; slot++)
+            assertEquals(slot, ring.take());
+        producer.join();
+    }
+
+    @Test
+    void cancel_StaleRangeKeepsNewerPressOfReusedEntry() throws InterruptedException {
+        InputRing ring = new InputRing(2, InputRing.Policy.DROP_NEWEST);
+        ring.offer(5);
+        ring.offer(7);
+        // a cancel reads the range [0, 2), then the consumer takes both presses and the producer reuses entry 0
+        assertEquals(5, ring.take());
+        assertEquals(7, ring.take());
+        ring.offer(5);
+
+        assertFalse(ring.cancel(5, 0, 2));
+        assertEquals(5, ring.take());
+    }
+}
@@ -0,0 +1,104 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SetTrackerTest {
+
+    private Env env;
+    private SetTracker tracker;
+
+    private void setUp(int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        tracker = new SetTracker(env);
+        for (int card = 0; card < config.deckSize; card++)
+            tracker.addedToDeck(card);
+    }
+
+    private int countSets(int[] cards, int count) {
+        return (int) env.util.streamSets(Arrays.copyOf(cards, count), true).count();
+    }
+
+    @Test
+    void exactCounts_FollowPlaceAndRemove() {
+
+        setUp(3, 4);
+        assertEquals(81 * 80 / 6, tracker.setsInPlay());
+        assertEquals(0, tracker.setsOnTable());
+
+        Random random = new Random(1);
+        int[] inPlay = new int[env.config.deckSize];
+        for (int card = 0; card < inPlay.length; card++)
+            inPlay[card] = card;
+        int inPlayCount = inPlay.length;
+        int[] onTable = new int[inPlayCount];
+        int onTableCount = 0;
+        boolean[] placed = new boolean[inPlay.length];
+
+        for (int step = 0; step < 200; step++) {
+            if (onTableCount < 12 && onTableCount < inPlayCount && (onTableCount == 0 || random.nextBoolean())) {
+                int card;
+                do card = inPlay[random.nextInt(inPlayCount)]; while (placed[card]);
+                placed[card] = true;
+                onTable[onTableCount++] = card;
+                tracker.placedOnTable(card);
+            } else if (onTableCount > 0) {
+                int index = random.nextInt(onTableCount);
+                int card = onTable[index];
+                onTable[index] = onTable[--onTableCount];
+                placed[card] = false;
+                boolean collected = random.nextInt(4) == 0;
+                tracker.removedFromTable(card, collected);
+                if (collected) {
+                    for (int i = 0; i < inPlayCount; i++)
+                        if (inPlay[i] == card)
+                            inPlay[i] = inPlay[--inPlayCount];
+                }
+            }
+            assertEquals(countSets(onTable, onTableCount), tracker.setsOnTable());
+            assertEquals(countSets(inPlay, inPlayCount), tracker.setsInPlay());
+            assertEquals(tracker.setsOnTable() > 0, tracker.hasSetOnTable());
+        }
+    }
+
+    @Test
+    void otherFeatureSizes_AreSearchedAgainAfterAChange() {
+
+        setUp(4, 2);
+        int[] set = env.util.findSets(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15), 1).get(0);
+        for (int i = 0; i < set.length - 1; i++)
+            tracker.placedOnTable(set[i]);
+        assertFalse(tracker.hasSetOnTable());
+
+        tracker.placedOnTable(set[set.length - 1]);
+        assertTrue(tracker.hasSetOnTable());
+        assertEquals(1, tracker.setsOnTable());
+
+        tracker.removedFromTable(set[0], false);
+        assertFalse(tracker.hasSetOnTable());
+        assertTrue(tracker.hasSetInPlay());
+
+        tracker.placedOnTable(set[0]);
+        assertTrue(tracker.hasSetOnTable());
+
+        for (int card = 0; card < env.config.deckSize; card++)
+            tracker.removedFromTable(card, true);
+        assertFalse(tracker.hasSetOnTable());
+        assertFalse(tracker.hasSetInPlay());
+    }
+}
@@ -7,17 +7,22 @@ import bguspl.set.Util;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
     Table table;
-    private Integer[] slotToCard;
-    private Integer[] cardToSlot;
+    private int[] slotToCard;
+    private int[] cardToSlot;
 
     @BeforeEach
     void setUp() {
@@ -32,34 +37,34 @@ class TableTest {
         properties.put("PlayerKeys2", "85,73,79,80");
         MockLogger logger = new MockLogger();
         Config config = new Config(logger, properties);
-        slotToCard = new Integer[config.tableSize];
-        cardToSlot = new Integer[config.deckSize];
+        slotToCard = new int[config.tableSize];
+        cardToSlot = new int[config.deckSize];
+        Arrays.fill(slotToCard, Table.EMPTY);
+        Arrays.fill(cardToSlot, Table.EMPTY);
 
         Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
         table = new Table(env, slotToCard, cardToSlot);
     }
 
     private int fillSomeSlots() {
-        slotToCard[1] = 3;
-        slotToCard[2] = 5;
-        cardToSlot[3] = 1;
-        cardToSlot[5] = 2;
+        table.placeCard(3, 1);
+        table.placeCard(5, 2);
 
         return 2;
     }
 
     private void fillAllSlots() {
-        for (int i = 0; i < slotToCard.length; ++i) {
-            slotToCard[i] = i;
-            cardToSlot[i] = i;
-        }
+        for (int i = 0; i < slotToCard.length; ++i)
+            table.placeCard(i, i);
     }
 
     private void placeSomeCardsAndAssert() throws InterruptedException {
         table.placeCard(8, 2);
 
-        assertEquals(8, (int) slotToCard[2]);
-        assertEquals(2, (int) cardToSlot[8]);
+        assertEquals(8, slotToCard[2]);
+        assertEquals(2, cardToSlot[8]);
+        assertEquals(8, table.cardAt(2));
+        assertEquals(2, table.slotOf(8));
     }
 
     @Test
@@ -95,6 +100,66 @@ class TableTest {
         placeSomeCardsAndAssert();
     }
 
+    @Test
+    void removeCard_SlotBecomesEmpty() {
+
+        int slotsFilled = fillSomeSlots();
+        table.removeCard(1);
+
+        assertEquals(Table.EMPTY, slotToCard[1]);
+        assertEquals(Table.EMPTY, cardToSlot[3]);
+        assertEquals(slotsFilled - 1, table.countCards());
+    }
+
+    @Test
+    void placeToken_OnlyThePlayersSlotIsMarked() {
+
+        fillAllSlots();
+        table.placeToken(1, 3);
+
+        assertTrue(table.hasToken(1, 3));
+        assertFalse(table.hasToken(0, 3));
+        assertFalse(table.hasToken(1, 2));
+    }
+
+    @Test
+    void placeToken_NotOnAnEmptySlot() {
+
+        fillSomeSlots();
+
+        assertFalse(table.placeToken(0, 0));
+        assertFalse(table.hasToken(0, 0));
+        assertTrue(table.placeToken(0, 1));
+    }
+
+    @Test
+    void removeToken_ReturnsWhetherThereWasAToken() {
+
+        fillAllSlots();
+        table.placeToken(0, 2);
+
+        assertTrue(table.removeToken(0, 2));
+        assertFalse(table.hasToken(0, 2));
+        assertFalse(table.removeToken(0, 2));
+    }
+
+    @Test
+    void removeCard_RemovesTheTokensOnIt() {
+
+        fillAllSlots();
+        table.placeToken(0, 2);
+        table.placeToken(1, 2);
+        table.placeToken(1, 3);
+        int[] affected = new int[2];
+        assertEquals(2, table.removeCard(2, affected));
+
+        assertEquals(0, affected[0]);
+        assertEquals(1, affected[1]);
+        assertFalse(table.hasToken(0, 2));
+        assertFalse(table.hasToken(1, 2));
+        assertTrue(table.hasToken(1, 3));
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {}
@@ -143,6 +208,21 @@ class TableTest {
             return null;
         }
 
+        @Override
+        public int findSetsParallel(List<Integer> deck, int count, Consumer<int[]> action) {
+            return 0;
+        }
+
+        @Override
+        public Stream<int[]> streamSets(int[] deck, boolean reuse) {
+            return Stream.empty();
+        }
+
+        @Override
+        public int completeSet(int first, int second) {
+            return 0;
+        }
+
         @Override
         public void spin() {}
     }